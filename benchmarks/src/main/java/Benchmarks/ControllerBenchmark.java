@@ -0,0 +1,89 @@
+package Benchmarks;
+
+import Main.Controller;
+import Main.ScriptCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+//every phase of the Controller pipeline, measured separately
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+
+    @Param({"8", "64", "256"})
+    public int variables;
+
+    @Param({"10", "100", "1000"})
+    public int LL;
+
+    private String dataFile;
+    private String script;
+    private Controller controller;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path file = SyntheticData.writeDataFile(variables, LL);
+        dataFile = file.toString();
+        script = SyntheticData.ratioScript();
+
+        controller = new Controller(SyntheticData.modelName(variables));
+        controller.readDataFrom(dataFile).runModel().runScript(script);
+    }
+
+    @Benchmark
+    public Controller readDataFrom() {
+        return controller.readDataFrom(dataFile);
+    }
+
+    @Benchmark
+    public Controller runModel() {
+        return controller.runModel();
+    }
+
+    //shared cache already holds the compiled script
+    @Benchmark
+    public Controller runScriptWarm() {
+        return controller.runScript(script);
+    }
+
+    //fresh cache means engine lookup and compilation on every run, as before caching existed
+    @Benchmark
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 3, time = 2)
+    public Controller runScriptCold() {
+        return controller.withScriptCache(new ScriptCache(1)).runScript(script);
+    }
+
+    @Benchmark
+    public String getResultsAsTsv() {
+        return controller.getResultsAsTsv();
+    }
+
+    //whole pipeline, the way a single batch job uses it
+    @Benchmark
+    public String pipeline() {
+        return new Controller(SyntheticData.modelName(variables))
+                .readDataFrom(dataFile)
+                .runModel()
+                .runScript(script)
+                .getResultsAsTsv();
+    }
+}
@@ -0,0 +1,53 @@
+package Benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+//data files matching the generated Models.SyntheticN classes
+final class SyntheticData {
+
+    private SyntheticData() {
+    }
+
+    static String modelName(int variables) {
+        return "Models.Synthetic" + variables;
+    }
+
+    //only X inputs are written, Y outputs are zero-filled by the controller
+    static Path writeDataFile(int variables, int LL) throws IOException {
+        Path file = Files.createTempFile("synthetic-" + variables + "-" + LL + "-", ".txt");
+        file.toFile().deleteOnExit();
+
+        SplittableRandom random = new SplittableRandom(variables * 31L + LL);
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("LATA");
+            for (int year = 0; year < LL; year++) {
+                writer.write(" " + (2000 + year));
+            }
+            writer.newLine();
+
+            for (int i = 0; i < variables / 2; i++) {
+                writer.write("X" + i);
+                writer.write(" " + random.nextDouble(1_000, 1_000_000));
+                for (int year = 1; year < LL; year++) {
+                    writer.write(" " + random.nextDouble(1.0, 1.05));
+                }
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    //element-wise script in the style of the README example
+    static String ratioScript() {
+        return """
+                Z = new double[LL];
+                for (i = 0; i < LL; i++) {
+                Z[i] = Y0[i] / X0[i];
+                }
+                """;
+    }
+}
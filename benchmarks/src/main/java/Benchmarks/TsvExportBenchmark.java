@@ -0,0 +1,90 @@
+package Benchmarks;
+
+import Main.Controller;
+import Main.Results;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+//compares the old string concatenation export with the streaming and binary ones, run with -prof gc for allocations
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TsvExportBenchmark {
+
+    @Param({"64", "256"})
+    public int variables;
+
+    @Param({"100", "1000"})
+    public int LL;
+
+    private Controller controller;
+    private Results results;
+
+    @Setup
+    public void setUp() throws IOException {
+        controller = new Controller(SyntheticData.modelName(variables))
+                .readDataFrom(SyntheticData.writeDataFile(variables, LL).toString())
+                .runModel();
+        results = controller.getResults();
+
+        //both implementations must produce the very same text
+        if (!legacyTsv(results).equals(controller.getResultsAsTsv())) {
+            throw new IllegalStateException("Streaming export differs from the legacy one");
+        }
+    }
+
+    @Benchmark
+    public String legacy() {
+        return legacyTsv(results);
+    }
+
+    @Benchmark
+    public String streamingToString() {
+        return controller.getResultsAsTsv();
+    }
+
+    @Benchmark
+    public Controller streamingToWriter() {
+        return controller.writeResultsTo(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public Controller binaryToStream() {
+        return controller.writeBinaryResultsTo(OutputStream.nullOutputStream());
+    }
+
+    //copy of the export as it was implemented before, kept here only for comparison
+    private static String legacyTsv(Results results) {
+        String returnString = "";
+        returnString += "LL" + "\t";
+        for (String year : results.getYears()) {
+            returnString += year + " ";
+        }
+        returnString += "\n";
+        for (String variable : results.getVariableNames()) {
+            returnString += variable + "\t";
+            for (double value : results.get(variable)) {
+                returnString += value + " ";
+            }
+            returnString += "\n";
+        }
+        return returnString;
+    }
+}
@@ -0,0 +1,123 @@
+package Processors;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+//generates <Model>_Binder (implementing Main.ModelBinder) next to every top level class with @Bind fields
+//non-private fields are accessed directly, private ones through static final VarHandles, which the JIT treats
+//as constants; classes the binder can't handle are skipped with a note and stay on the reflective binder
+@SupportedAnnotationTypes("Annotations.Bind")
+public class BinderProcessor extends AbstractProcessor {
+
+    private final Set<String> generated = new LinkedHashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            Set<TypeElement> models = new LinkedHashSet<>();
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.FIELD) {
+                    models.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+            for (TypeElement model : models) {
+                if (generated.add(model.getQualifiedName().toString())) {
+                    generate(model, annotation);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement model, TypeElement bindAnnotation) {
+        if (model.getNestingKind() != NestingKind.TOP_LEVEL || model.getKind() != ElementKind.CLASS) {
+            note(model, "binder is generated only for top level classes");
+            return;
+        }
+
+        //fields in declaration order, like ModelBinding collects them
+        List<VariableElement> fields = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(model.getEnclosedElements())) {
+            boolean bound = field.getAnnotationMirrors().stream()
+                    .anyMatch(mirror -> mirror.getAnnotationType().asElement().equals(bindAnnotation));
+            if (!bound) {
+                continue;
+            }
+            if (!isLL(field) && !isDoubleArray(field.asType())) {
+                note(field, "only int LL and double[] fields are supported by the generated binder");
+                return;
+            }
+            if (field.getModifiers().contains(Modifier.FINAL)) {
+                note(field, "final fields are not supported by the generated binder");
+                return;
+            }
+            fields.add(field);
+        }
+
+        String packageName = ((PackageElement) model.getEnclosingElement()).getQualifiedName().toString();
+        String modelName = model.getSimpleName().toString();
+        String binderName = modelName + "_Binder";
+        String source = new SourceBuilder(packageName, modelName, binderName, fields, hasRunMethod(model)).build();
+
+        String qualifiedName = packageName.isEmpty() ? binderName : packageName + "." + binderName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, model).openWriter()) {
+            writer.write(source);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Error while writing binder " + qualifiedName + ": " + e.getMessage(), model);
+        }
+    }
+
+    //public run() of the class or one it inherits, as Class.getMethod would find it
+    private boolean hasRunMethod(TypeElement model) {
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(model))) {
+            if (method.getSimpleName().contentEquals("run")
+                    && method.getParameters().isEmpty()
+                    && method.getModifiers().contains(Modifier.PUBLIC)
+                    && !method.getModifiers().contains(Modifier.STATIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isLL(VariableElement field) {
+        return field.getSimpleName().contentEquals("LL") && field.asType().getKind() == TypeKind.INT;
+    }
+
+    private static boolean isDoubleArray(TypeMirror type) {
+        return type.getKind() == TypeKind.ARRAY
+                && ((ArrayType) type).getComponentType().getKind() == TypeKind.DOUBLE;
+    }
+
+    private void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "Reflective binder is used for " + element.getEnclosingElement() + ": " + message, element);
+    }
+}
@@ -0,0 +1,177 @@
+package Processors;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.VariableElement;
+import java.util.List;
+
+//source of one generated binder, fields are given in declaration order
+final class SourceBuilder {
+
+    private final String packageName;
+    private final String modelName;
+    private final String binderName;
+    private final List<VariableElement> fields;
+    private final boolean hasRunMethod;
+    private final StringBuilder source = new StringBuilder();
+
+    SourceBuilder(String packageName, String modelName, String binderName,
+                  List<VariableElement> fields, boolean hasRunMethod) {
+        this.packageName = packageName;
+        this.modelName = modelName;
+        this.binderName = binderName;
+        this.fields = fields;
+        this.hasRunMethod = hasRunMethod;
+    }
+
+    String build() {
+        if (!packageName.isEmpty()) {
+            line("package " + packageName + ";");
+            line("");
+        }
+        line("@javax.annotation.processing.Generated(\"Processors.BinderProcessor\")");
+        line("public final class " + binderName + " implements Main.ModelBinder {");
+        line("");
+        handles();
+        line("    @Override");
+        line("    public Class<?> getModelClass() {");
+        line("        return " + modelName + ".class;");
+        line("    }");
+        line("");
+        writeFrom();
+        readInto();
+        run();
+        line("}");
+        return source.toString();
+    }
+
+    //private fields can't be named from the binder, their handles are constants the JIT folds
+    private void handles() {
+        boolean any = false;
+        for (VariableElement field : fields) {
+            if (isPrivate(field)) {
+                line("    private static final java.lang.invoke.VarHandle " + handleName(field) + " = handle(\""
+                        + field.getSimpleName() + "\", " + (BinderProcessor.isLL(field) ? "int" : "double[]") + ".class, "
+                        + isStatic(field) + ");");
+                any = true;
+            }
+        }
+        if (!any) {
+            return;
+        }
+        line("");
+        line("    private static java.lang.invoke.VarHandle handle(String name, Class<?> type, boolean isStatic) {");
+        line("        try {");
+        line("            java.lang.invoke.MethodHandles.Lookup lookup = java.lang.invoke.MethodHandles.privateLookupIn(");
+        line("                    " + modelName + ".class, java.lang.invoke.MethodHandles.lookup());");
+        line("            return isStatic");
+        line("                    ? lookup.findStaticVarHandle(" + modelName + ".class, name, type)");
+        line("                    : lookup.findVarHandle(" + modelName + ".class, name, type);");
+        line("        } catch (ReflectiveOperationException e) {");
+        line("            throw new ExceptionInInitializerError(e);");
+        line("        }");
+        line("    }");
+        line("");
+    }
+
+    private void writeFrom() {
+        line("    @Override");
+        line("    public void writeFrom(Object model, Main.VariableStore store, int LL) {");
+        line("        " + modelName + " m = (" + modelName + ") model;");
+        boolean hasArrays = fields.stream().anyMatch(field -> !BinderProcessor.isLL(field));
+        if (hasArrays) {
+            line("        double[] values;");
+        }
+        for (VariableElement field : fields) {
+            if (BinderProcessor.isLL(field)) {
+                line("        " + set(field, "LL"));
+            }
+            else {
+                line("        values = store.toArray(\"" + field.getSimpleName() + "\");");
+                line("        " + set(field, "values == null ? new double[LL] : values"));
+            }
+        }
+        line("    }");
+        line("");
+    }
+
+    private void readInto() {
+        line("    @Override");
+        line("    public void readInto(Object model, Main.VariableStore store) {");
+        line("        " + modelName + " m = (" + modelName + ") model;");
+        boolean hasArrays = fields.stream().anyMatch(field -> !BinderProcessor.isLL(field));
+        if (hasArrays) {
+            line("        double[] values;");
+        }
+        for (VariableElement field : fields) {
+            if (BinderProcessor.isLL(field)) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            line("        values = " + get(field) + ";");
+            line("        if (values != null) {");
+            line("            store.put(\"" + name + "\", values);");
+            line("        }");
+            line("        else {");
+            line("            store.remove(\"" + name + "\");");
+            line("        }");
+        }
+        line("    }");
+        line("");
+    }
+
+    private void run() {
+        line("    @Override");
+        line("    public void run(Object model) {");
+        if (hasRunMethod) {
+            line("        try {");
+            line("            ((" + modelName + ") model).run();");
+            line("        } catch (Throwable e) {");
+            line("            throw new RuntimeException(\"Error happened during invocation of run method\", e);");
+            line("        }");
+        }
+        else {
+            line("        throw new RuntimeException(\"No run method found\");");
+        }
+        line("    }");
+    }
+
+    private String set(VariableElement field, String value) {
+        if (!isPrivate(field)) {
+            return owner(field) + "." + field.getSimpleName() + " = " + value + ";";
+        }
+        if (isStatic(field)) {
+            return handleName(field) + ".set(" + value + ");";
+        }
+        return handleName(field) + ".set(m, " + value + ");";
+    }
+
+    private String get(VariableElement field) {
+        if (!isPrivate(field)) {
+            return owner(field) + "." + field.getSimpleName();
+        }
+        if (isStatic(field)) {
+            return "(double[]) " + handleName(field) + ".get()";
+        }
+        return "(double[]) " + handleName(field) + ".get(m)";
+    }
+
+    private String owner(VariableElement field) {
+        return isStatic(field) ? modelName : "m";
+    }
+
+    private static String handleName(VariableElement field) {
+        return "FIELD_" + field.getSimpleName();
+    }
+
+    private static boolean isPrivate(VariableElement field) {
+        return field.getModifiers().contains(Modifier.PRIVATE);
+    }
+
+    private static boolean isStatic(VariableElement field) {
+        return field.getModifiers().contains(Modifier.STATIC);
+    }
+
+    private void line(String text) {
+        source.append(text).append('\n');
+    }
+}
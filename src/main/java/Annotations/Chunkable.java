@@ -0,0 +1,13 @@
+package Annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+@Retention(RetentionPolicy.RUNTIME) // annotation is available while executing
+@Target(ElementType.TYPE) // only model classes whose run computes year t from years t - lag .. t, so it can run over chunks of years
+public @interface Chunkable {
+    int lag() default 0;
+}
@@ -0,0 +1,15 @@
+package Annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+@Retention(RetentionPolicy.RUNTIME) // annotation is available while executing
+@Target(ElementType.FIELD) // only @Bind fields computed by run, value lists the @Bind fields they are computed from
+// once one field of a model has it, every field run computes needs it, the other @Bind fields are inputs
+// checked by incremental runs, the only ones which use it
+public @interface DependsOn {
+    String[] value();
+}
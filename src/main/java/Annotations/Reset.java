@@ -0,0 +1,12 @@
+package Annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+@Retention(RetentionPolicy.RUNTIME) // annotation is available while executing
+@Target(ElementType.METHOD) // only methods, called without arguments when a pooled model is returned
+public @interface Reset {
+}
@@ -0,0 +1,100 @@
+package Main;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//variable extraction shared by languages with C-like assignments (X = ..., X[i] = ..., X[i] += ...),
+//runners only give their keywords; single lowercase letters are treated as loop counters
+public abstract class AbstractScriptRunner implements ScriptRunner {
+
+    private static final Pattern ASSIGNMENT = Pattern.compile(
+            "\\b([a-zA-Z_][a-zA-Z0-9_]*)\\s*(?:\\[[^\\]]*\\]\\s*)?(?:[-+*/]?=)(?!=)");
+    private static final Pattern IDENTIFIER = Pattern.compile("\\b[a-zA-Z_][a-zA-Z0-9_]*");
+    private static final Pattern PLAIN_ASSIGNMENT = Pattern.compile("\\s*=(?!=)");
+
+    private final String language;
+    private final List<String> extensions;
+    private final Set<String> keywords;
+
+    protected AbstractScriptRunner(String language, List<String> extensions, Set<String> keywords) {
+        this.language = language;
+        this.extensions = List.copyOf(extensions);
+        this.keywords = Set.copyOf(keywords);
+    }
+
+    @Override
+    public String getLanguage() {
+        return language;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return extensions;
+    }
+
+    @Override
+    public boolean isScriptKeyword(String token) {
+        return keywords.contains(token);
+    }
+
+    @Override
+    public Set<String> retrieveAssignedVariables(String script) {
+        Set<String> variables = new HashSet<>();
+        Matcher matcher = ASSIGNMENT.matcher(script);
+        while (matcher.find()) {
+            String token = matcher.group(1);
+            if (!(token.length() == 1 && Character.isLowerCase(token.charAt(0)))
+                    && !isScriptKeyword(token)) {
+                variables.add(token);
+            }
+        }
+        return variables;
+    }
+
+    //all identifiers except whole assignment targets (X = new double[LL]); any other occurrence is a read,
+    //later ones included, as in X = X + 1
+    @Override
+    public Set<String> retrieveReadVariables(String script) {
+        Set<String> variables = new HashSet<>();
+        Matcher matcher = IDENTIFIER.matcher(script);
+        while (matcher.find()) {
+            String token = matcher.group();
+            if ((token.length() == 1 && Character.isLowerCase(token.charAt(0)))
+                    || isScriptKeyword(token)
+                    || variables.contains(token)) {
+                continue;
+            }
+            if (!PLAIN_ASSIGNMENT.matcher(script).region(matcher.end(), script.length()).lookingAt()) {
+                variables.add(token);
+            }
+        }
+        return variables;
+    }
+
+    @Override
+    public Set<String> retrieveVariables(String script) {
+        Set<String> variables = new HashSet<>();
+
+        // Split the script into tokens by whitespace and special characters
+        String[] tokens = script.split("[\\s\\W]+");
+
+        for (String token : tokens) {
+            // Add to variables if it's not a single lowercase letter and starts with a valid identifier character
+            if (token.matches("[a-zA-Z_][a-zA-Z0-9_]*")
+                    && !(token.length() == 1 && Character.isLowerCase(token.charAt(0)))
+                    && !isScriptKeyword(token)) {
+                variables.add(token);
+            }
+        }
+
+        return variables;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + language + ", " + extensions + "]";
+    }
+}
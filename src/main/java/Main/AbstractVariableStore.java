@@ -0,0 +1,106 @@
+package Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//interning of names shared by both store backends, ids stay stable for the life of the store
+abstract class AbstractVariableStore implements VariableStore {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private boolean[] present = new boolean[16];
+    private int size = 0;
+
+    @Override
+    public int id(String name) {
+        Integer id = ids.get(name);
+        return id == null || !present[id] ? -1 : id;
+    }
+
+    @Override
+    public String name(int id) {
+        return names.get(id);
+    }
+
+    @Override
+    public List<String> names() {
+        List<String> stored = new ArrayList<>(size);
+        for (int id = 0; id < names.size(); id++) {
+            if (present[id]) {
+                stored.add(names.get(id));
+            }
+        }
+        return Collections.unmodifiableList(stored);
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return id(name) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int put(String name, double[] values, int length) {
+        if (length > values.length) {
+            throw new IllegalArgumentException("Length " + length + " exceeds " + values.length + " values of " + name);
+        }
+        int id = intern(name);
+        write(id, values, length);
+        if (!present[id]) {
+            present[id] = true;
+            size++;
+        }
+        return id;
+    }
+
+    @Override
+    public void remove(String name) {
+        Integer id = ids.get(name);
+        if (id != null && present[id]) {
+            present[id] = false;
+            size--;
+            release(id);
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(present, false);
+        size = 0;
+        releaseAll();
+    }
+
+    protected void checkId(int id) {
+        if (id < 0 || id >= names.size() || !present[id]) {
+            throw new IllegalArgumentException("No variable with id " + id);
+        }
+    }
+
+    private int intern(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            ids.put(name, id);
+            if (id == present.length) {
+                present = Arrays.copyOf(present, id * 2);
+            }
+        }
+        return id;
+    }
+
+    //stores values in the block of the variable, reallocating it if length differs
+    protected abstract void write(int id, double[] values, int length);
+
+    protected abstract void release(int id);
+
+    protected abstract void releaseAll();
+}
@@ -4,13 +4,19 @@ import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Application extends JLayeredPane {
 
@@ -23,7 +29,24 @@ public class Application extends JLayeredPane {
     Controller controller;
     private final Map<String, String> modelsPaths = new HashMap<>();
     private final Map<String, String> dataPaths = new HashMap<>();
-    private JTable calculationsTable;
+    private final DefaultListModel<String> modelNames = new DefaultListModel<>();
+    private final DefaultListModel<String> dataNames = new DefaultListModel<>();
+
+    //models on the class path and data files, the saved index fills the lists at once and they are refreshed
+    //in the background; the index is kept in reflectivescripting.catalog, ~/.reflectivescripting/catalog.idx by default
+    private final Catalog catalog = Catalog.open(Path.of(System.getProperty("reflectivescripting.catalog",
+                    Path.of(System.getProperty("user.home"), ".reflectivescripting", "catalog.idx").toString())))
+            .addClassPath()
+            .addDataRoot(Path.of("src/res/Data"));
+    private final ResultsTableModel resultsTableModel = new ResultsTableModel();
+
+    //background work, controller isn't thread safe so tasks run one by one in the order they were started
+    private final ExecutorService taskExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("controller-task").factory());
+    private final List<JComponent> taskControls = new ArrayList<>();
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+    private final JButton cancelTaskButton = new JButton("Cancel");
+    private ControllerTask currentTask;
 
     public Application() {
         this.setPreferredSize(new Dimension(800, 400));
@@ -46,6 +69,10 @@ public class Application extends JLayeredPane {
         this.add(mainLayer, Integer.valueOf(1));
         this.add(scriptIDELayer, Integer.valueOf(2));
         this.add(errorsLayer, Integer.valueOf(3));
+
+        showCatalog();
+        catalog.addListener(() -> SwingUtilities.invokeLater(this::showCatalog));
+        Thread.ofVirtual().name("catalog-refresh").start(() -> catalog.refresh().watch());
     }
 
     private JPanel createModelsAndDataPanel() {
@@ -66,16 +93,19 @@ public class Application extends JLayeredPane {
         JPanel listsPanel = new JPanel(new GridLayout(1, 2));
 
         //models list
-        JList<String> modelList = new JList<>(parseModels());
+        JList<String> modelList = new JList<>(modelNames);
         listsPanel.add(new JScrollPane(modelList));
 
         //data selection list
-        JList<String> dataList = new JList<>(parseData());
+        JList<String> dataList = new JList<>(dataNames);
         dataList.addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting()) {
-                displayValuesOnTable(compressDataToTsv(dataPaths.get(dataList.getSelectedValue())));
+            if (!e.getValueIsAdjusting() && dataList.getSelectedValue() != null) {
+                String dataPath = dataPaths.get(dataList.getSelectedValue());
+                startTask(new ControllerTask("Reading data", task -> Results.of(DataFileParser.parse(dataPath))));
             }
         });
+        taskControls.add(modelList);
+        taskControls.add(dataList);
 
         listsPanel.add(new JScrollPane(dataList));
 
@@ -94,18 +124,47 @@ public class Application extends JLayeredPane {
 
         runModelButton.addActionListener(e -> {
            if (modelList.getSelectedValue() != null) {
-               try {
-                   controller = new Controller(modelsPaths.get(modelList.getSelectedValue()));
-                   if (dataList.getSelectedValue() != null) {
-                       controller.readDataFrom(dataPaths.get(dataList.getSelectedValue())).runModel();
-                       displayValuesOnTable(controller.getResultsAsTsv());
-                   }
-                   else {
-                       showErrorDialog(errorsLayer, "No data source was selected");
-                   }
+               if (dataList.getSelectedValue() != null) {
+                   String modelClassName = modelsPaths.get(modelList.getSelectedValue());
+                   String dataPath = dataPaths.get(dataList.getSelectedValue());
+
+                   //new controller replaces the current one only when the whole run succeeded,
+                   //models are borrowed from the pool and the replaced controller gives its model back
+                   Controller[] created = new Controller[1];
+                   ControllerTask task = new ControllerTask("Running model", t -> {
+                       //scripts of the window run with the limits of the shared sandbox, a runaway one is stopped
+                       Controller newController = Controller.fromPool(ModelPool.of(catalog.loadModel(modelClassName)))
+                               .useSandbox(ScriptSandbox.getShared());
+                       try {
+                           t.step(1, 3);
+                           newController.readDataFrom(dataPath);
+                           t.step(2, 3);
+                           newController.runModel();
+                           t.step(3, 3);
+                           created[0] = newController;
+                           return newController.getResults();
+                       }
+                       catch (Exception ex) {
+                           newController.close();
+                           throw ex;
+                       }
+                   });
+                   task.onSuccess(() -> {
+                       if (controller != null) {
+                           controller.close();
+                       }
+                       controller = created[0];
+                   });
+                   //cancelled after the run succeeded, the new controller is never shown so its model goes back now
+                   task.onCancel(() -> {
+                       if (created[0] != null) {
+                           created[0].close();
+                       }
+                   });
+                   startTask(task);
                }
-               catch (Exception ex) {
-                   showErrorDialog(errorsLayer, ex.getMessage());
+               else {
+                   showErrorDialog(errorsLayer, "No data source was selected");
                }
            }
            else {
@@ -113,6 +172,7 @@ public class Application extends JLayeredPane {
            }
         });
 
+        taskControls.add(runModelButton);
         JPanel buttonPanel = new JPanel();
         buttonPanel.add(runModelButton);
         return buttonPanel;
@@ -122,7 +182,7 @@ public class Application extends JLayeredPane {
         JPanel returnPanel = new JPanel(new BorderLayout());
 
         //center panel for table
-        calculationsTable = new JTable();
+        JTable calculationsTable = new JTable(resultsTableModel);
         returnPanel.add(new JScrollPane(calculationsTable), BorderLayout.CENTER);
 
         //bottom panel for buttons
@@ -139,13 +199,13 @@ public class Application extends JLayeredPane {
 
                 int result = fileChooser.showOpenDialog(null);
                 if (result == JFileChooser.APPROVE_OPTION) {
-                    try {
-                        controller.runScriptFromFile(fileChooser.getSelectedFile().getAbsolutePath());
-                        displayValuesOnTable(controller.getResultsAsTsv());
-                    }
-                    catch (Exception ex) {
-                        showErrorDialog(errorsLayer, ex.getMessage());
-                    }
+                    Controller target = controller;
+                    String scriptPath = fileChooser.getSelectedFile().getAbsolutePath();
+                    startTask(new ControllerTask("Running script", task -> {
+                        target.runScriptFromFile(scriptPath);
+                        task.step(1, 1);
+                        return target.getResults();
+                    }));
                 }
             }
             else {
@@ -165,7 +225,26 @@ public class Application extends JLayeredPane {
 
         bottomPanel.add(runScriptButton);
         bottomPanel.add(createScriptButton);
-        returnPanel.add(bottomPanel, BorderLayout.SOUTH);
+        taskControls.add(runScriptButton);
+        taskControls.add(createScriptButton);
+
+        //progress of the background task, under the buttons
+        JPanel progressPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        progressBar.setStringPainted(true);
+        progressBar.setString("");
+        cancelTaskButton.setEnabled(false);
+        cancelTaskButton.addActionListener(e -> {
+            if (currentTask != null) {
+                currentTask.cancel(true);
+            }
+        });
+        progressPanel.add(progressBar);
+        progressPanel.add(cancelTaskButton);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(bottomPanel, BorderLayout.CENTER);
+        southPanel.add(progressPanel, BorderLayout.SOUTH);
+        returnPanel.add(southPanel, BorderLayout.SOUTH);
 
         return returnPanel;
     }
@@ -188,19 +267,34 @@ public class Application extends JLayeredPane {
         //creating a panel for buttons
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         JButton okButton = new JButton("OK");
+        ControllerTask[] scriptTask = new ControllerTask[1];
         okButton.addActionListener(e -> {
-            try {
-                controller.runScript(textArea.getText());
-                displayValuesOnTable(controller.getResultsAsTsv());
-                scriptDialog.dispose();
-            }
-            catch (Exception ex) {
-                showErrorDialog(errorsLayer, ex.getMessage());
-            }
+            //dialog stays open on errors, so the script can be corrected
+            Controller target = controller;
+            String script = textArea.getText();
+            ControllerTask task = new ControllerTask("Running script", t -> {
+                target.runScript(script);
+                t.step(1, 1);
+                return target.getResults();
+            });
+            task.onSuccess(scriptDialog::dispose);
+            task.addPropertyChangeListener(event -> {
+                if ("state".equals(event.getPropertyName()) && event.getNewValue() == SwingWorker.StateValue.DONE) {
+                    okButton.setEnabled(true);
+                }
+            });
+            okButton.setEnabled(false);
+            scriptTask[0] = task;
+            startTask(task);
         });
 
         JButton cancelButton = new JButton("Cancel");
-        cancelButton.addActionListener(e -> scriptDialog.dispose());
+        cancelButton.addActionListener(e -> {
+            if (scriptTask[0] != null) {
+                scriptTask[0].cancel(true);
+            }
+            scriptDialog.dispose();
+        });
 
         //adding buttons to the panel
         buttonPanel.add(okButton);
@@ -214,81 +308,149 @@ public class Application extends JLayeredPane {
         scriptDialog.setVisible(true);
     }
 
-    private String[] parseModels() {
-        ArrayList<String> allModelsArrList = new ArrayList<>();
-        String directoryPath = "src/main/java/Models";
-        File modelsDirectory = new File(directoryPath);
-
-        if (modelsDirectory.exists() && modelsDirectory.isDirectory()) {
-            File[] files = modelsDirectory.listFiles();
-
-            if (files != null) {
-                for (File file : files) {
-                    if (file.getName().toLowerCase().contains("model") && file.getName().endsWith(".java")) {
-                        String nameWithoutExtension = file.getName().substring(0, file.getName().lastIndexOf("."));
-                        allModelsArrList.add(nameWithoutExtension);
-                        modelsPaths.put(nameWithoutExtension, "Models." + nameWithoutExtension);
-                    }
-                }
-            }
+    //simple names of models and file names of data without extension, full names only when those repeat
+    private void showCatalog() {
+        Map<String, String> models = new HashMap<>();
+        for (Catalog.ModelEntry model : catalog.getModels()) {
+            String name = models.containsKey(model.getSimpleName()) ? model.className() : model.getSimpleName();
+            models.put(name, model.className());
         }
-        return allModelsArrList.toArray(new String[0]);
+        Map<String, String> data = new HashMap<>();
+        for (Catalog.DataEntry entry : catalog.getData()) {
+            String name = data.containsKey(entry.getName()) ? entry.path().toString() : entry.getName();
+            data.put(name, entry.path().toString());
+        }
+        modelsPaths.clear();
+        modelsPaths.putAll(models);
+        dataPaths.clear();
+        dataPaths.putAll(data);
+        replaceNames(modelNames, models.keySet());
+        replaceNames(dataNames, data.keySet());
     }
 
-    private String[] parseData() {
-        ArrayList<String> allDataArrList = new ArrayList<>();
-        String directoryPath = "src/res/Data";
-        File modelsDirectory = new File(directoryPath);
-
-        if (modelsDirectory.exists() && modelsDirectory.isDirectory()) {
-            File[] files = modelsDirectory.listFiles();
-
-            if (files != null) {
-                for (File file : files) {
-                    if (file.getName().toLowerCase().contains("data") && file.getName().endsWith(".txt")) {
-                        String nameWithoutExtension = file.getName().substring(0, file.getName().lastIndexOf("."));
-                        allDataArrList.add(nameWithoutExtension);
-                        dataPaths.put(nameWithoutExtension, file.getAbsolutePath());
-                    }
-                }
-            }
+    //lists are rebuilt only when their names changed, so a refresh without changes keeps the selection
+    private static void replaceNames(DefaultListModel<String> listModel, Set<String> names) {
+        List<String> sorted = new ArrayList<>(names);
+        sorted.sort(String.CASE_INSENSITIVE_ORDER);
+        if (sorted.equals(Collections.list(listModel.elements()))) {
+            return;
         }
-        return allDataArrList.toArray(new String[0]);
+        listModel.clear();
+        listModel.addAll(sorted);
     }
 
-    private String compressDataToTsv(String filePath) {
-        StringBuilder returnString = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-
-            while ((line = br.readLine()) != null) {
-                returnString.append(line).append("\n");
+    private void startTask(ControllerTask task) {
+        currentTask = task;
+        for (JComponent control : taskControls) {
+            control.setEnabled(false);
+        }
+        cancelTaskButton.setEnabled(true);
+        progressBar.setValue(0);
+        progressBar.setString(task.description);
+        task.addPropertyChangeListener(event -> {
+            if ("progress".equals(event.getPropertyName())) {
+                progressBar.setValue((Integer) event.getNewValue());
             }
+        });
+        taskExecutor.execute(task);
+    }
+
+    private void finishTask(ControllerTask task) {
+        //a cancelled task may still be finishing in the background, only the latest one resets the controls
+        if (currentTask != task) {
+            return;
         }
-        catch (IOException e) {
-            System.err.println("Error during reading of the file.");
+        currentTask = null;
+        for (JComponent control : taskControls) {
+            control.setEnabled(true);
         }
-        return returnString.toString();
+        cancelTaskButton.setEnabled(false);
+        progressBar.setValue(0);
+        progressBar.setString(task.isCancelled() ? "Cancelled" : "");
     }
 
-    private void displayValuesOnTable(String dataString) {
-        String[] columns;
-        String[][] data;
+    @FunctionalInterface
+    private interface TaskBody {
+        Results run(ControllerTask task) throws Exception;
+    }
 
-        //getting all lines with variables
-        String[] variables = dataString.split("\n");
+    //runs controller work off the event dispatch thread and shows the results on the table when it's done
+    private final class ControllerTask extends SwingWorker<Results, Void> {
 
-        //parsing columns
-        columns = variables[0].split("\\s+");
-        columns[0] = "";
+        private final String description;
+        private final TaskBody body;
+        private Runnable onSuccess = () -> {};
+        private Runnable onCancel = () -> {};
+        //the body and done() of a cancelled task both count down, the last one runs onCancel
+        private final AtomicInteger cancelCountdown = new AtomicInteger(2);
+
+        ControllerTask(String description, TaskBody body) {
+            this.description = description;
+            this.body = body;
+        }
 
-        //parsing other data
-        data = new String[variables.length - 1][];
-        for (int i = 1; i < variables.length; i++) {
-            data[i - 1] = variables[i].split("\\s+");
+        void onSuccess(Runnable onSuccess) {
+            this.onSuccess = onSuccess;
         }
 
-        calculationsTable.setModel(new javax.swing.table.DefaultTableModel(data, columns));
+        //runs once the task is cancelled and its body has finished, whichever comes last,
+        //since done() of a cancelled task is called while the body may still be running
+        void onCancel(Runnable onCancel) {
+            this.onCancel = onCancel;
+        }
+
+        private void countDownCancel() {
+            if (cancelCountdown.decrementAndGet() == 0) {
+                onCancel.run();
+            }
+        }
+
+        //called by the body between its steps, stops the task once it's cancelled
+        void step(int done, int total) {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            setProgress(done * 100 / total);
+        }
+
+        @Override
+        protected Results doInBackground() throws Exception {
+            try {
+                return body.run(this);
+            } finally {
+                countDownCancel();
+            }
+        }
+
+        @Override
+        protected void done() {
+            finishTask(this);
+            if (isCancelled()) {
+                countDownCancel();
+                return;
+            }
+            try {
+                resultsTableModel.update(get());
+                onSuccess.run();
+            }
+            catch (ExecutionException ex) {
+                showErrorDialog(errorsLayer, describe(ex.getCause()));
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    //message with all its causes, one per line
+    private static String describe(Throwable error) {
+        StringBuilder message = new StringBuilder(String.valueOf(error.getMessage()));
+        for (Throwable cause = error.getCause(); cause != null && cause != cause.getCause(); cause = cause.getCause()) {
+            if (cause.getMessage() != null) {
+                message.append("<br>").append(cause.getMessage());
+            }
+        }
+        return message.toString();
     }
 
     private void showErrorDialog(JPanel parentPanel, String errMessage) {
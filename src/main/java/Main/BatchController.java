@@ -0,0 +1,283 @@
+package Main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class BatchController {
+
+    private final String modelName;
+    private final List<Path> dataFiles = new ArrayList<>();
+    private final List<ScriptSource> scripts = new ArrayList<>();
+    private final List<ControllerListener> listeners = new ArrayList<>();
+
+    private ExecutorService executor;
+    private boolean ownsExecutor = true;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private boolean virtualThreads = false;
+    private boolean pooledModels = false;
+    private boolean lazyData = false;
+
+    public BatchController(String modelName) {
+        this.modelName = modelName;
+    }
+
+    public BatchController addDataFile(String fname) {
+        dataFiles.add(Path.of(fname));
+        return this;
+    }
+
+    public BatchController addDataFiles(Collection<String> fnames) {
+        for (String fname : fnames) {
+            addDataFile(fname);
+        }
+        return this;
+    }
+
+    public BatchController addDataDirectory(String directory) {
+        //taking all regular files, sorted so job indexes are stable between runs
+        try (Stream<Path> files = Files.list(Path.of(directory))) {
+            files.filter(Files::isRegularFile).sorted().forEach(dataFiles::add);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while listing data directory:\n" + directory, e);
+        }
+        return this;
+    }
+
+    public BatchController addScript(String script) {
+        scripts.add(ScriptSource.of(script));
+        return this;
+    }
+
+    //language of one of the ScriptRunners, like groovy or python
+    public BatchController addScript(String script, String language) {
+        scripts.add(ScriptSource.of(script, language));
+        return this;
+    }
+
+    public BatchController addScriptFromFile(String fname) {
+        //script is read once here, not by every job, and run by the runner of its extension
+        scripts.add(ScriptSource.fromFile(fname));
+        return this;
+    }
+
+    public BatchController useForkJoinPool(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.executor = null;
+        this.ownsExecutor = true;
+        this.virtualThreads = false;
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public BatchController useVirtualThreads(int maxConcurrentJobs) {
+        if (maxConcurrentJobs < 1) {
+            throw new IllegalArgumentException("Concurrent jobs count must be positive: " + maxConcurrentJobs);
+        }
+        this.executor = null;
+        this.ownsExecutor = true;
+        this.virtualThreads = true;
+        this.parallelism = maxConcurrentJobs;
+        return this;
+    }
+
+    //executor stays open after the batch, the caller is responsible for shutting it down
+    public BatchController useExecutor(ExecutorService executor, int maxConcurrentJobs) {
+        if (maxConcurrentJobs < 1) {
+            throw new IllegalArgumentException("Concurrent jobs count must be positive: " + maxConcurrentJobs);
+        }
+        this.executor = executor;
+        this.ownsExecutor = false;
+        this.parallelism = maxConcurrentJobs;
+        return this;
+    }
+
+    //jobs borrow model instances from the shared pool of the model class instead of constructing new ones,
+    //models with auxiliary state should clear it in a @Reset method
+    public BatchController usePooledModels(boolean pooledModels) {
+        this.pooledModels = pooledModels;
+        return this;
+    }
+
+    //jobs parse only the variables their model binds, indexes of shared data files are built once
+    public BatchController readDataLazily(boolean lazyData) {
+        this.lazyData = lazyData;
+        return this;
+    }
+
+    //added to the controller of every job, so it is called from many threads at once
+    public BatchController addListener(ControllerListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public int getJobsCount() {
+        return dataFiles.size();
+    }
+
+    //results are returned in completion order, use BatchResult.index() to restore the order of data files
+    public Stream<BatchResult> run() {
+        ExecutorService jobsExecutor;
+        if (executor != null) {
+            jobsExecutor = executor;
+        }
+        else if (virtualThreads) {
+            jobsExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        }
+        else {
+            jobsExecutor = new ForkJoinPool(parallelism);
+        }
+
+        BatchIterator iterator = new BatchIterator(jobsExecutor, List.copyOf(dataFiles), List.copyOf(scripts));
+        return StreamSupport.stream(
+                Spliterators.spliterator(iterator, dataFiles.size(), Spliterator.SIZED | Spliterator.NONNULL),
+                false
+        ).onClose(iterator::close);
+    }
+
+    private BatchResult runJob(int index, Path dataFile, List<ScriptSource> jobScripts) {
+        long start = System.nanoTime();
+        try {
+            //every job has its own controller, so it also has its own model instance (borrowed ones until the job ends)
+            try (Controller controller = pooledModels ? Controller.fromPool(modelName) : new Controller(modelName)) {
+                for (ControllerListener listener : listeners) {
+                    controller.addListener(listener);
+                }
+                if (lazyData) {
+                    controller.readDataLazilyFrom(dataFile.toString());
+                }
+                else {
+                    controller.readDataFrom(dataFile.toString());
+                }
+                controller.runModel();
+                for (ScriptSource script : jobScripts) {
+                    controller.runScript(script.text(), script.runner());
+                }
+                return new BatchResult(index, dataFile, controller.getResults(), null, System.nanoTime() - start);
+            }
+        }
+        catch (Exception e) {
+            return new BatchResult(index, dataFile, null, e, System.nanoTime() - start);
+        }
+    }
+
+    private class BatchIterator implements Iterator<BatchResult> {
+
+        private final ExecutorService jobsExecutor;
+        private final CompletionService<BatchResult> completionService;
+        private final List<Path> jobFiles;
+        private final List<ScriptSource> jobScripts;
+        private final Set<Future<BatchResult>> inFlight = new HashSet<>();
+        //jobs actually running, the window only buffers results; virtual threads and executors of the caller
+        //would otherwise run the whole window at once
+        private final Semaphore running = new Semaphore(parallelism);
+        private int nextToSubmit = 0;
+        private int returned = 0;
+        private boolean closed = false;
+
+        BatchIterator(ExecutorService jobsExecutor, List<Path> jobFiles, List<ScriptSource> jobScripts) {
+            this.jobsExecutor = jobsExecutor;
+            this.completionService = new ExecutorCompletionService<>(jobsExecutor);
+            this.jobFiles = jobFiles;
+            this.jobScripts = jobScripts;
+
+            //keeping a bounded window of jobs submitted, so slow consumers don't pile up results
+            int window = Math.max(1, parallelism * 2);
+            while (nextToSubmit < jobFiles.size() && nextToSubmit < window) {
+                submitNext();
+            }
+            if (jobFiles.isEmpty()) {
+                close();
+            }
+        }
+
+        private void submitNext() {
+            int index = nextToSubmit++;
+            Path dataFile = jobFiles.get(index);
+            inFlight.add(completionService.submit(() -> {
+                running.acquire();
+                try {
+                    return runJob(index, dataFile, jobScripts);
+                } finally {
+                    running.release();
+                }
+            }));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return returned < jobFiles.size() && !closed;
+        }
+
+        @Override
+        public BatchResult next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BatchResult result;
+            try {
+                Future<BatchResult> completed = completionService.take();
+                inFlight.remove(completed);
+                result = completed.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new RuntimeException("Batch was interrupted", e);
+            } catch (ExecutionException e) {
+                close();
+                throw new RuntimeException("Error while executing batch job", e.getCause());
+            }
+
+            returned++;
+            if (nextToSubmit < jobFiles.size()) {
+                submitNext();
+            }
+            if (returned == jobFiles.size()) {
+                close();
+            }
+            return result;
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Future<BatchResult> future : inFlight) {
+                future.cancel(true);
+            }
+            inFlight.clear();
+            if (ownsExecutor) {
+                jobsExecutor.shutdownNow();
+            }
+        }
+    }
+
+    public record BatchResult(int index, Path dataFile, Results results, Exception error, long elapsedNanos) {
+
+        public boolean isSuccessful() {
+            return error == null;
+        }
+    }
+}
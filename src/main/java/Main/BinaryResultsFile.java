@@ -0,0 +1,186 @@
+package Main;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//memory-mapped results written in the binary columnar format (see BinaryResultsWriter), columns are views of the file
+public final class BinaryResultsFile {
+
+    private final ByteBuffer buffer;
+    private final String yearsName;
+    private final String[] years;
+    private final List<String> names;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final int[] offsets;
+    private final int[] lengths;
+
+    BinaryResultsFile(ByteBuffer buffer, String source) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (!isBinary(buffer)) {
+                throw new RuntimeException("Not a binary results file:\n" + source);
+            }
+            int position = buffer.position() + BinaryResultsWriter.MAGIC.length;
+            int version = buffer.getInt(position);
+            if (version != BinaryResultsWriter.VERSION) {
+                throw new RuntimeException("Unsupported binary results version " + version + ":\n" + source);
+            }
+            position += Integer.BYTES;
+
+            int yearsNameLength = checkCount(buffer.getInt(position), source);
+            yearsName = readString(position + Integer.BYTES, yearsNameLength);
+            position += Integer.BYTES + yearsNameLength;
+
+            years = new String[checkCount(buffer.getInt(position), source)];
+            position += Integer.BYTES;
+            for (int i = 0; i < years.length; i++) {
+                int length = checkCount(buffer.getInt(position), source);
+                years[i] = readString(position + Integer.BYTES, length);
+                position += Integer.BYTES + length;
+            }
+
+            int count = checkCount(buffer.getInt(position), source);
+            position += Integer.BYTES;
+            String[] variableNames = new String[count];
+            offsets = new int[count];
+            lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                int length = checkCount(buffer.getInt(position), source);
+                variableNames[i] = readString(position + Integer.BYTES, length);
+                position += Integer.BYTES + length;
+                lengths[i] = checkCount(buffer.getInt(position), source);
+                position += Integer.BYTES;
+                indexes.put(variableNames[i], i);
+            }
+            names = Collections.unmodifiableList(Arrays.asList(variableNames));
+
+            //columns follow the header, starting at the next multiple of 8
+            long offset = (position - buffer.position() + Double.BYTES - 1) / Double.BYTES * Double.BYTES + buffer.position();
+            for (int i = 0; i < count; i++) {
+                offsets[i] = (int) offset;
+                offset += (long) lengths[i] * Double.BYTES;
+            }
+            if (offset > buffer.limit()) {
+                throw new RuntimeException("Binary results file is truncated:\n" + source);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new RuntimeException("Binary results file is truncated:\n" + source, e);
+        }
+    }
+
+    public static BinaryResultsFile open(String fname) {
+        return open(Path.of(fname));
+    }
+
+    public static BinaryResultsFile open(Path path) {
+        return new BinaryResultsFile(DataFileParser.map(path), path.toString());
+    }
+
+    //checks the magic bytes at the position of the buffer, without moving it
+    static boolean isBinary(ByteBuffer buffer) {
+        byte[] magic = BinaryResultsWriter.MAGIC;
+        if (buffer.remaining() < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (buffer.get(buffer.position() + i) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //name of the LL field of the model which wrote the results, empty if it had none
+    public String getYearsName() {
+        return yearsName;
+    }
+
+    public String[] getYears() {
+        return years.clone();
+    }
+
+    public int getYearsCount() {
+        return years.length;
+    }
+
+    public List<String> getVariableNames() {
+        return names;
+    }
+
+    public boolean contains(String variable) {
+        return indexes.containsKey(variable);
+    }
+
+    //read-only view of the mapped column, nothing is copied
+    public DoubleBuffer getColumn(String variable) {
+        Integer index = indexes.get(variable);
+        if (index == null) {
+            return null;
+        }
+        return buffer.slice(offsets[index], lengths[index] * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asDoubleBuffer()
+                .asReadOnlyBuffer();
+    }
+
+    public double[] get(String variable) {
+        DoubleBuffer column = getColumn(variable);
+        if (column == null) {
+            return null;
+        }
+        double[] values = new double[column.remaining()];
+        column.get(values);
+        return values;
+    }
+
+    //every variable gets LL values, like in text data files the last value is carried forward
+    DataFile toDataFile() {
+        int LL = years.length;
+        VariableStore variables = VariableStore.onHeap();
+        double[] values = new double[LL];
+        for (String name : names) {
+            DoubleBuffer column = getColumn(name);
+            int count = Math.min(LL, column.remaining());
+            column.get(values, 0, count);
+            Arrays.fill(values, count, LL, count == 0 ? 0 : values[count - 1]);
+            variables.put(name, values, LL);
+        }
+        return new DataFile(years.clone(), variables);
+    }
+
+    public Results toResults() {
+        List<String> rowNames = new ArrayList<>(names.size() + 1);
+        List<double[]> rowValues = new ArrayList<>(names.size() + 1);
+        if (!yearsName.isEmpty()) {
+            rowNames.add(yearsName);
+            rowValues.add(null);
+        }
+        for (String name : names) {
+            rowNames.add(name);
+            rowValues.add(get(name));
+        }
+        return new Results(years.clone(), rowNames, rowValues);
+    }
+
+    private String readString(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checkCount(int count, String source) {
+        if (count < 0) {
+            throw new RuntimeException("Binary results file is corrupted:\n" + source);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,109 @@
+package Main;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+//writes results in the binary columnar format read by BinaryResultsFile, little-endian:
+//  magic        4 bytes "RSCB"
+//  version      int
+//  years name   int byte length + UTF-8 name of the row of years (the LL field of the model), empty without one
+//  years        int count, then for every year int byte length + UTF-8 bytes
+//  variables    int count, then for every variable int byte length + UTF-8 name + int values count
+//  padding      zero bytes up to a multiple of 8
+//  columns      values of every variable as doubles, in the order of the header
+final class BinaryResultsWriter {
+
+    static final byte[] MAGIC = {'R', 'S', 'C', 'B'};
+    static final int VERSION = 1;
+
+    private final OutputStream out;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    BinaryResultsWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    void writeHeader(String yearsName, String[] years, List<String> names, int[] lengths) throws IOException {
+        long written = 0;
+        buffer.put(MAGIC);
+        buffer.putInt(VERSION);
+        written += MAGIC.length + Integer.BYTES;
+
+        written += putString(yearsName == null ? "" : yearsName);
+
+        written += putInt(years.length);
+        for (String year : years) {
+            written += putString(year);
+        }
+        written += putInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            written += putString(names.get(i));
+            written += putInt(lengths[i]);
+        }
+
+        //columns start aligned, so a mapped file can be read as doubles directly
+        while (written % Double.BYTES != 0) {
+            ensureRemaining(1);
+            buffer.put((byte) 0);
+            written++;
+        }
+    }
+
+    void writeColumn(double[] values) throws IOException {
+        //bulk copy through a double view of the buffer, as many values as fit at once
+        for (int offset = 0; offset < values.length; ) {
+            ensureRemaining(Double.BYTES);
+            int count = Math.min(buffer.remaining() / Double.BYTES, values.length - offset);
+            buffer.asDoubleBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Double.BYTES);
+            offset += count;
+        }
+    }
+
+    void writeColumn(VariableStore store, int id) throws IOException {
+        int length = store.length(id);
+        for (int i = 0; i < length; i++) {
+            ensureRemaining(Double.BYTES);
+            buffer.putDouble(store.get(id, i));
+        }
+    }
+
+    //stream is only flushed, closing it is up to the caller
+    void finish() throws IOException {
+        flush();
+        out.flush();
+    }
+
+    private int putInt(int value) throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(value);
+        return Integer.BYTES;
+    }
+
+    private int putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        for (int offset = 0; offset < bytes.length; ) {
+            ensureRemaining(1);
+            int count = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+        return Integer.BYTES + bytes.length;
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+}
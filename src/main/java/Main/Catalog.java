@@ -0,0 +1,619 @@
+package Main;
+
+import Annotations.Bind;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+//index of model classes and data files, kept in a file so startup doesn't rescan everything
+//model classes are found by the @Bind descriptor in their bytecode, without loading them; data files by their LATA
+//line or binary magic, with years and variable names taken from their header
+//a source (class file, jar or data file) is read again only when its size or modification time changed,
+//watch() keeps the catalog current while it is open
+//models outside the class path are loaded by a class loader of the catalog, which is closed and replaced when one of
+//their class files or jars changes, and its classes are dropped from the shared model pools; controllers already
+//running keep the old class, and classes it hadn't loaded yet can't be loaded by them anymore
+//a class which is also on the class path always comes from the application class loader, it can't be reloaded
+public final class Catalog implements AutoCloseable {
+
+    private static final byte[] MAGIC = {'R', 'S', 'C', 'C'};
+    private static final int VERSION = 1;
+    //built at runtime, a literal would be found in the constant pool of this class
+    private static final byte[] BIND_DESCRIPTOR = ("L" + Bind.class.getName().replace('.', '/') + ";")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte CLASS_FILE = 0;
+    private static final byte JAR = 1;
+    private static final byte DATA_FILE = 2;
+
+    private final Path indexFile;
+    private final Set<Path> modelRoots = new LinkedHashSet<>();
+    private final Set<Path> classPathRoots = ConcurrentHashMap.newKeySet();
+    private final Set<Path> dataRoots = new LinkedHashSet<>();
+    private final Map<Path, Source> sources = new ConcurrentHashMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile URLClassLoader classLoader;
+
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private Thread watcher;
+
+    private Catalog(Path indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    //previously saved index is loaded right away, missing or unreadable index just means a full scan
+    public static Catalog open(Path indexFile) {
+        Catalog catalog = new Catalog(indexFile);
+        if (indexFile != null && Files.isRegularFile(indexFile)) {
+            catalog.load();
+        }
+        return catalog;
+    }
+
+    //directories and jars of the application class path
+    public Catalog addClassPath() {
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                classPathRoots.add(Path.of(entry).toAbsolutePath().normalize());
+                addModelRoot(Path.of(entry));
+            }
+        }
+        return this;
+    }
+
+    //directory of class files or a jar, models from roots outside the class path are loaded by loadModel
+    public Catalog addModelRoot(Path root) {
+        modelRoots.add(root.toAbsolutePath().normalize());
+        replaceClassLoader();
+        return this;
+    }
+
+    public Catalog addDataRoot(Path root) {
+        dataRoots.add(root.toAbsolutePath().normalize());
+        return this;
+    }
+
+    //called after every change of the catalog, from the thread which found it
+    public Catalog addListener(Runnable listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    //brings every root up to date and saves the index
+    public synchronized Catalog refresh() {
+        Set<Path> seen = new LinkedHashSet<>();
+        for (Path root : modelRoots) {
+            if (Files.isDirectory(root)) {
+                for (Path file : listFiles(root)) {
+                    if (file.toString().endsWith(".class")) {
+                        seen.add(file);
+                        update(file, CLASS_FILE, root);
+                    }
+                }
+            }
+            else if (Files.isRegularFile(root) && root.toString().endsWith(".jar")) {
+                seen.add(root);
+                update(root, JAR, root);
+            }
+        }
+        for (Path root : dataRoots) {
+            if (Files.isDirectory(root)) {
+                for (Path file : listFiles(root)) {
+                    seen.add(file);
+                    update(file, DATA_FILE, root);
+                }
+            }
+        }
+        sources.keySet().retainAll(seen);
+        save();
+        notifyListeners();
+        return this;
+    }
+
+    //starts a daemon thread which applies changes in the roots as they happen
+    public synchronized Catalog watch() {
+        if (watcher != null) {
+            return this;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Path root : modelRoots) {
+                if (Files.isDirectory(root)) {
+                    registerTree(root);
+                }
+                else if (root.getParent() != null && Files.isDirectory(root.getParent())) {
+                    register(root.getParent());
+                }
+            }
+            for (Path root : dataRoots) {
+                if (Files.isDirectory(root)) {
+                    registerTree(root);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error while watching catalog roots", e);
+        }
+        watcher = Thread.ofPlatform().daemon().name("catalog-watcher").start(this::watchLoop);
+        return this;
+    }
+
+    public List<ModelEntry> getModels() {
+        List<ModelEntry> models = new ArrayList<>();
+        for (Source source : sources.values()) {
+            if (source.kind != DATA_FILE) {
+                for (String className : source.names) {
+                    models.add(new ModelEntry(className, source.root));
+                }
+            }
+        }
+        models.sort(Comparator.comparing(ModelEntry::className));
+        return models;
+    }
+
+    public List<DataEntry> getData() {
+        List<DataEntry> data = new ArrayList<>();
+        for (Map.Entry<Path, Source> entry : sources.entrySet()) {
+            Source source = entry.getValue();
+            if (source.kind == DATA_FILE) {
+                data.add(new DataEntry(entry.getKey(), source.years, source.names));
+            }
+        }
+        data.sort(Comparator.comparing(DataEntry::path));
+        return data;
+    }
+
+    //classes on the class path come from the application loader, others from the current loader of the catalog,
+    //so a changed model outside the class path is loaded again
+    public Class<?> loadModel(String className) {
+        if (!isOutsideClassPath(className)) {
+            try {
+                return ModelBinding.loadClass(className);
+            } catch (RuntimeException e) {
+                //not on the class path after all, the catalog's loader may still find it
+            }
+        }
+        try {
+            return Class.forName(className, true, getClassLoader());
+        } catch (ClassNotFoundException notFound) {
+            throw new RuntimeException("Class not found: " + className, notFound);
+        }
+    }
+
+    private boolean isOutsideClassPath(String className) {
+        for (Source source : sources.values()) {
+            if (source.kind != DATA_FILE && source.names.contains(className)) {
+                return !classPathRoots.contains(source.root);
+            }
+        }
+        return false;
+    }
+
+    //over the model roots outside the class path, classes on it are found by the parent
+    private URLClassLoader getClassLoader() {
+        URLClassLoader loader = classLoader;
+        if (loader == null) {
+            synchronized (this) {
+                loader = classLoader;
+                if (loader == null) {
+                    List<URL> urls = new ArrayList<>();
+                    for (Path root : modelRoots) {
+                        if (classPathRoots.contains(root)) {
+                            continue;
+                        }
+                        try {
+                            urls.add(root.toUri().toURL());
+                        } catch (MalformedURLException e) {
+                            throw new RuntimeException("Invalid model root:\n" + root, e);
+                        }
+                    }
+                    loader = new URLClassLoader(urls.toArray(new URL[0]), Catalog.class.getClassLoader());
+                    classLoader = loader;
+                }
+            }
+        }
+        return loader;
+    }
+
+    //the next model is loaded by a new loader; the old one is closed, so its jars aren't kept open (and locked
+    //on Windows), and its classes are dropped from the shared pools, so they can be unloaded
+    private synchronized void replaceClassLoader() {
+        URLClassLoader replaced = classLoader;
+        classLoader = null;
+        if (replaced == null) {
+            return;
+        }
+        ModelPool.evict(replaced);
+        try {
+            replaced.close();
+        } catch (IOException e) {
+            //jars of the old loader stay open until it is collected, the new loader doesn't need them
+        }
+    }
+
+    private boolean isModelSource(Source source) {
+        return source != null && source.kind != DATA_FILE && !classPathRoots.contains(source.root);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Error while closing catalog watcher", e);
+            }
+            watchService = null;
+            watcher = null;
+        }
+        replaceClassLoader();
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = watchedDirectories.get(key);
+            boolean changed = false;
+            synchronized (this) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                        //events were lost, the whole catalog is checked instead
+                        refresh();
+                        changed = false;
+                        break;
+                    }
+                    Path path = directory.resolve((Path) event.context());
+                    changed |= apply(path);
+                }
+                if (changed) {
+                    save();
+                }
+            }
+            if (changed) {
+                notifyListeners();
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+    }
+
+    //updates the catalog for one created, changed or deleted path, returns whether anything changed
+    private boolean apply(Path path) {
+        if (Files.isDirectory(path)) {
+            //new directory inside a root, its files may have been created before it was registered
+            Path root = rootOf(path);
+            if (root == null) {
+                return false;
+            }
+            try {
+                registerTree(path);
+            } catch (IOException e) {
+                return false;
+            }
+            boolean changed = false;
+            for (Path file : listFiles(path)) {
+                changed |= apply(file);
+            }
+            return changed;
+        }
+        if (!Files.exists(path)) {
+            //removed file or a whole removed directory
+            Source removed = sources.remove(path);
+            if (isModelSource(removed)) {
+                replaceClassLoader();
+            }
+            boolean changed = removed != null;
+            for (Path source : List.copyOf(sources.keySet())) {
+                if (source.startsWith(path)) {
+                    removed = sources.remove(source);
+                    if (isModelSource(removed)) {
+                        replaceClassLoader();
+                    }
+                    changed |= removed != null;
+                }
+            }
+            return changed;
+        }
+
+        if (modelRoots.contains(path) && path.toString().endsWith(".jar")) {
+            return update(path, JAR, path);
+        }
+        Path root = rootOf(path);
+        if (root == null) {
+            return false;
+        }
+        if (dataRoots.contains(root)) {
+            return update(path, DATA_FILE, root);
+        }
+        if (path.toString().endsWith(".class")) {
+            return update(path, CLASS_FILE, root);
+        }
+        return false;
+    }
+
+    private Path rootOf(Path path) {
+        for (Path root : dataRoots) {
+            if (path.startsWith(root)) {
+                return root;
+            }
+        }
+        for (Path root : modelRoots) {
+            if (path.startsWith(root) && Files.isDirectory(root)) {
+                return root;
+            }
+        }
+        return null;
+    }
+
+    //reads the source again only when it differs from the indexed one
+    private boolean update(Path path, byte kind, Path root) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            Source removed = sources.remove(path);
+            if (isModelSource(removed)) {
+                replaceClassLoader();
+            }
+            return removed != null;
+        }
+        long modified = attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS);
+        Source current = sources.get(path);
+        if (current != null && current.kind == kind && current.size == attributes.size() && current.modified == modified) {
+            return false;
+        }
+
+        Source source = switch (kind) {
+            case CLASS_FILE -> scanClassFile(path, root, attributes.size(), modified);
+            case JAR -> scanJar(path, attributes.size(), modified);
+            default -> scanDataFile(path, root, attributes.size(), modified);
+        };
+        if (source == null) {
+            source = sources.remove(path);
+            if (isModelSource(source)) {
+                replaceClassLoader();
+            }
+            return source != null;
+        }
+        //loaded classes of a changed class file or jar are stale
+        if (isModelSource(sources.put(path, source))) {
+            replaceClassLoader();
+        }
+        return true;
+    }
+
+    private static Source scanClassFile(Path file, Path root, long size, long modified) {
+        try {
+            if (!contains(Files.readAllBytes(file), BIND_DESCRIPTOR)) {
+                return new Source(CLASS_FILE, root, size, modified, List.of(), List.of());
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        String relative = root.relativize(file).toString();
+        String className = relative.substring(0, relative.length() - ".class".length())
+                .replace(File.separatorChar, '.');
+        return new Source(CLASS_FILE, root, size, modified, List.of(), List.of(className));
+    }
+
+    private static Source scanJar(Path jar, long size, long modified) {
+        List<String> classNames = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!name.endsWith(".class") || name.endsWith("module-info.class") || name.startsWith("META-INF/")) {
+                    continue;
+                }
+                try (InputStream input = jarFile.getInputStream(entry)) {
+                    if (contains(input.readAllBytes(), BIND_DESCRIPTOR)) {
+                        classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return new Source(JAR, jar, size, modified, List.of(), classNames);
+    }
+
+    //only the header is read: LATA years and variable names of text files (the index is cached for later reads)
+    //or the header of binary files; anything else isn't data
+    private static Source scanDataFile(Path file, Path root, long size, long modified) {
+        try {
+            MappedByteBuffer buffer = DataFileParser.map(file);
+            if (BinaryResultsFile.isBinary(buffer)) {
+                BinaryResultsFile binaryFile = new BinaryResultsFile(buffer, file.toString());
+                return new Source(DATA_FILE, root, size, modified,
+                        List.of(binaryFile.getYears()), binaryFile.getVariableNames());
+            }
+            DataIndex index = DataIndex.of(file, buffer);
+            if (index.getLL() == 0) {
+                return null;
+            }
+            return new Source(DATA_FILE, root, size, modified, List.of(index.getYears()), index.getNames());
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean contains(byte[] bytes, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= bytes.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static List<Path> listFiles(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).map(path -> path.toAbsolutePath().normalize()).toList();
+        } catch (NoSuchFileException e) {
+            return List.of();
+        } catch (IOException e) {
+            throw new RuntimeException("Error while listing catalog root:\n" + directory, e);
+        }
+    }
+
+    private void registerTree(Path directory) throws IOException {
+        try (Stream<Path> directories = Files.walk(directory)) {
+            for (Path path : directories.filter(Files::isDirectory).toList()) {
+                register(path);
+            }
+        }
+    }
+
+    private void register(Path directory) throws IOException {
+        WatchKey key = directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        watchedDirectories.put(key, directory.toAbsolutePath().normalize());
+    }
+
+    private void notifyListeners() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    //index file: magic, version, number of sources, then every source with its path, root, size, time and names
+    private void save() {
+        if (indexFile == null) {
+            return;
+        }
+        try {
+            if (indexFile.getParent() != null) {
+                Files.createDirectories(indexFile.getParent());
+            }
+            //written next to the index and moved over it, so a reader never sees half of it
+            Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.write(MAGIC);
+                output.writeInt(VERSION);
+                Map<Path, Source> snapshot = new HashMap<>(sources);
+                output.writeInt(snapshot.size());
+                for (Map.Entry<Path, Source> entry : snapshot.entrySet()) {
+                    Source source = entry.getValue();
+                    output.writeByte(source.kind);
+                    output.writeUTF(entry.getKey().toString());
+                    output.writeUTF(source.root.toString());
+                    output.writeLong(source.size);
+                    output.writeLong(source.modified);
+                    writeStrings(output, source.years);
+                    writeStrings(output, source.names);
+                }
+            }
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while saving catalog index:\n" + indexFile, e);
+        }
+    }
+
+    private void load() {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            byte[] magic = input.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC) || input.readInt() != VERSION) {
+                return;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                byte kind = input.readByte();
+                Path path = Path.of(input.readUTF());
+                Path root = Path.of(input.readUTF());
+                long size = input.readLong();
+                long modified = input.readLong();
+                List<String> years = readStrings(input);
+                List<String> names = readStrings(input);
+                sources.put(path, new Source(kind, root, size, modified, years, names));
+            }
+        } catch (IOException | RuntimeException e) {
+            //a damaged index is rebuilt by the next refresh
+            sources.clear();
+        }
+    }
+
+    private static void writeStrings(DataOutputStream output, List<String> strings) throws IOException {
+        output.writeInt(strings.size());
+        for (String string : strings) {
+            output.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(input.readUTF());
+        }
+        return List.copyOf(strings);
+    }
+
+    public record ModelEntry(String className, Path source) {
+
+        public String getSimpleName() {
+            return className.substring(className.lastIndexOf('.') + 1);
+        }
+    }
+
+    public record DataEntry(Path path, List<String> years, List<String> variables) {
+
+        public String getName() {
+            String fileName = path.getFileName().toString();
+            int extension = fileName.lastIndexOf('.');
+            return extension > 0 ? fileName.substring(0, extension) : fileName;
+        }
+    }
+
+    //class files without models are kept too, so they aren't read again on the next refresh
+    private record Source(byte kind, Path root, long size, long modified, List<String> years, List<String> names) {
+    }
+}
@@ -0,0 +1,141 @@
+package Main;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+//headless entry points, Main opens the window only when started without arguments
+final class CommandLine {
+
+    static final String USAGE = """
+            usage:
+              run --model <class> --data <file> [--script <file>]... [--format tsv|binary] [--output <file>]
+                  [--lazy] [--vectorized] [--from <year>] [--to <year>] [--cache]
+              serve [--port <port>]
+            """;
+
+    private CommandLine() {
+    }
+
+    //returns the exit status
+    static int execute(String[] args) {
+        try {
+            return switch (args[0]) {
+                case "run" -> run(args);
+                case "serve" -> serve(args);
+                default -> throw new IllegalArgumentException("Unknown command: " + args[0]);
+            };
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            return 2;
+        }
+    }
+
+    private static int run(String[] args) {
+        String model = null;
+        String data = null;
+        List<String> scriptFiles = new ArrayList<>();
+        String format = "tsv";
+        String output = null;
+        boolean lazy = false;
+        boolean vectorized = false;
+        boolean cached = false;
+        String from = null;
+        String to = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--model" -> model = value(args, ++i);
+                case "--data" -> data = value(args, ++i);
+                case "--script" -> scriptFiles.add(value(args, ++i));
+                case "--format" -> format = value(args, ++i);
+                case "--output" -> output = value(args, ++i);
+                case "--lazy" -> lazy = true;
+                case "--vectorized" -> vectorized = true;
+                case "--from" -> from = value(args, ++i);
+                case "--to" -> to = value(args, ++i);
+                case "--cache" -> cached = true;
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (!format.equals("tsv") && !format.equals("binary")) {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+
+        //startup is everything before the job: JVM, class loading and argument parsing
+        long startupMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        long start = System.nanoTime();
+        List<ScriptSource> scripts;
+        try {
+            scripts = Job.readScripts(scriptFiles);
+        } catch (RuntimeException e) {
+            System.err.println(Job.describe(e));
+            return 1;
+        }
+        Job job = new Job(model, data, scripts, format.equals("binary"), lazy, vectorized, from, to, cached);
+        try {
+            if (output == null) {
+                OutputStream stdout = new BufferedOutputStream(System.out);
+                job.run(stdout, List.of(), null);
+                stdout.flush();
+            }
+            else {
+                try (OutputStream file = Files.newOutputStream(Path.of(output))) {
+                    job.run(file, List.of(), null);
+                }
+            }
+        } catch (RuntimeException | IOException e) {
+            System.err.println(Job.describe(e));
+            return 1;
+        }
+        System.err.printf(Locale.ROOT, "startup %d ms, job %.3f ms%n", startupMillis, (System.nanoTime() - start) / 1e6);
+        return 0;
+    }
+
+    private static int serve(String[] args) {
+        int port = 8080;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--port")) {
+                try {
+                    port = Integer.parseInt(value(args, ++i));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid port: " + args[i]);
+                }
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        JobServer server;
+        try {
+            server = JobServer.start(port);
+        } catch (RuntimeException e) {
+            System.err.println(Job.describe(e));
+            return 1;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.err.printf(Locale.ROOT, "listening on http://127.0.0.1:%d, startup %.3f ms (jvm uptime %d ms)%n",
+                server.getPort(), server.getStartupNanos() / 1e6, server.getJvmUptimeMillis());
+        System.err.println("token " + server.getToken());
+        try {
+            server.awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value of " + args[index - 1]);
+        }
+        return args[index];
+    }
+}
@@ -1,253 +1,895 @@
 package Main;
 
-import Annotations.Bind;
-
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
+import javax.script.Bindings;
+import javax.script.CompiledScript;
 import javax.script.ScriptException;
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.nio.file.Files;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
-public class Controller {
+public class Controller implements AutoCloseable {
 
 
     private final Object modelInstance;
-    private String years = "";
-    private final Map<String, double[]> allScriptVariables = new HashMap<>();
-    private static final Set<String> GROOVY_KEYWORDS = Set.of(
-            "def", "new", "for", "if", "else", "while", "package", "class",
-            "return", "double", "int", "float", "boolean", "char", "long",
-            "short", "void", "true", "false", "null", "this", "super",
-            "as", "in", "switch", "case", "break", "continue"
-    );
+    private final ModelBinding binding;
+    private final ModelBinder binder;
+    private final ModelPool modelPool;
+    private boolean closed = false;
+    private ScriptCache scriptCache = ScriptCache.getShared();
+    private ScriptSandbox sandbox;
+    private boolean vectorizedScripts = false;
+    private IncrementalRuns incrementalRuns;
+    private ResultCache resultCache;
+    //key of the current model and script variables in the result cache, null when they can't be told by a key
+    private String resultKey;
+    //first and last year read from data files, null when the file starts or ends the window
+    private String firstYear;
+    private String lastYear;
+    private String[] years = new String[0];
+    private VariableStore allScriptVariables = VariableStore.onHeap();
+    //snapshot of model variables taken by exports, blocks are reused between exports
+    private final VariableStore modelVariables = VariableStore.onHeap();
+    private ScriptBindings scriptBindings;
+    private final List<ControllerListener> listeners = new CopyOnWriteArrayList<>();
 
     public Controller(String modelName) {
-        try {
-            //creating model according to its name
-            modelInstance = Class.forName(modelName).getDeclaredConstructor().newInstance();
+        //creating model according to its name, class and its constructor are looked up only once
+        this(ModelBinding.of(ModelBinding.loadClass(modelName)).newInstance(), null);
+    }
+
+    //for models loaded by other class loaders, like the ones of the catalog
+    public Controller(Class<?> modelClass) {
+        this(ModelBinding.of(modelClass).newInstance(), null);
+    }
+
+    private Controller(Object modelInstance, ModelPool modelPool) {
+        this.modelInstance = modelInstance;
+        this.binding = ModelBinding.of(modelInstance.getClass());
+        this.binder = binding.getBinder();
+        this.modelPool = modelPool;
+        this.scriptBindings = new ScriptBindings(modelInstance, binding, allScriptVariables);
+    }
+
+    //model instance is borrowed from the shared pool of its class and given back by close()
+    public static Controller fromPool(String modelName) {
+        return fromPool(ModelPool.of(modelName));
+    }
+
+    public static Controller fromPool(ModelPool modelPool) {
+        return new Controller(modelPool.borrow(), modelPool);
+    }
+
+    //returns a pooled model, controller can't be used afterwards; does nothing for controllers with own model
+    @Override
+    public void close() {
+        if (closed) {
+            return;
         }
-        catch (ClassNotFoundException e) {
-            throw new RuntimeException("Class not found: " + modelName);
-        } catch (InstantiationException e) {
-            throw new RuntimeException("Something went wrong while initializing the class: " + modelName);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException("Illegal access while found during initialization of the class: " + modelName);
-        } catch (NoSuchMethodException | InvocationTargetException e) {
-            throw new RuntimeException("No constructor found for class: " + modelName);
+        closed = true;
+        if (modelPool != null) {
+            modelPool.release(modelInstance);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Controller is closed, its model was returned to the pool");
         }
     }
 
     public Controller readDataFrom(String fname) {
+        return readData(fname, false);
+    }
+
+    //only lines of variables binded in the model are parsed, the index of the file is cached for later runs
+    public Controller readDataLazilyFrom(String fname) {
+        return readData(fname, true);
+    }
+
+    //data already in memory, like a DataFile built from arrays; the year window applies to it too
+    public Controller readData(DataFile dataFile) {
+        ensureOpen();
+        return assignData(startPhase(), dataFile);
+    }
+
+    private Controller readData(String fname, boolean lazily) {
+        ensureOpen();
+        PhaseClock clock = startPhase();
+
         //filling map with variables names and their values
-        int LL = 0;
-        Map<String, double[]> dataVariables = new HashMap<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(fname))){
-            String line;
-
-            while ((line = br.readLine()) != null) {
-                String[] tokens = line.split("\\s+");
-
-                if (tokens[0].equals("LATA")) {
-                    LL = tokens.length - 1;
-                    for (int i = 1; i < tokens.length; i++) {
-                        years += tokens[i] + " ";
-                    }
-                }
-                else {
-                    double[] values = new double[LL];
-                    for (int i = 0; i < values.length; i++) {
-                        if (i + 1 < tokens.length) {
-                            values[i] = Double.parseDouble(tokens[i + 1]);
-                        }
-                        else if (i == 0) {
-                            values[i] = 0.0;
-                        }
-                        else {
-                            values[i] = values[i - 1];
-                        }
+        DataFile dataFile;
+        try {
+            dataFile = lazily ? DataFileParser.parseLazily(fname) : DataFileParser.parse(fname);
+        } catch (RuntimeException e) {
+            failPhase(clock, ControllerPhase.READ_DATA, e);
+            throw e;
+        }
+        assignData(clock, dataFile);
+
+        //variables left by scripts of an earlier run would be mixed into the cached ones
+        if (resultCache != null && allScriptVariables.size() == 0) {
+            resultKey = resultCache.dataKey(binding.getModelClass(), Path.of(fname), firstYear, lastYear);
+        }
+        return this;
+    }
+
+    private Controller assignData(PhaseClock clock, DataFile dataFile) {
+        resultKey = null;
+        try {
+            if (firstYear != null || lastYear != null) {
+                int[] window = findWindow(dataFile.getYears());
+                dataFile = dataFile.window(window[0], window[1]);
+            }
+            if (dataFile.isLazy()) {
+                for (ModelBinding.BoundField field : binding.getFields()) {
+                    if (!field.isLL()) {
+                        dataFile.load(field.name());
                     }
-                    dataVariables.put(tokens[0], values);
                 }
             }
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException("File not found:\n" + fname);
-        } catch (IOException e) {
-            throw new RuntimeException("Error occurred while reading from file");
+        } catch (RuntimeException e) {
+            failPhase(clock, ControllerPhase.READ_DATA, e);
+            throw e;
         }
+        years = dataFile.getYears();
+        int LL = years.length;
 
         //assigning values only to variables which exist inside this model
-        for (Field field : modelInstance.getClass().getDeclaredFields()) {
+        binder.writeFrom(modelInstance, dataFile.getVariables(), LL);
+        if (incrementalRuns != null) {
+            incrementalRuns.dataRead(modelInstance, years);
+        }
+
+        int variables = dataFile.getLoadedCount();
+        endPhase(clock, ControllerPhase.READ_DATA, variables, (long) variables * LL);
+        return this;
+    }
+
+    //runs a @Chunkable model over consecutive chunks of the years of the file (within the year window, if set),
+    //every chunk holds only its years plus the lag years carried over from the previous chunk
+    //results of every chunk are passed to the consumer as they are computed, afterwards the model holds the last chunk
+    public Controller runModelInChunks(String fname, int chunkYears, Consumer<Results> chunkConsumer) {
+        ensureOpen();
+        if (!binding.isChunkable()) {
+            throw new RuntimeException("Model " + binding.getModelClass().getName() + " can't be run in chunks, it isn't @Chunkable");
+        }
+        if (chunkYears < 1) {
+            throw new IllegalArgumentException("Chunk must have at least one year: " + chunkYears);
+        }
+        int lag = binding.getChunkLag();
+        resultKey = null;
+
+        PhaseClock clock = startPhase();
+        DataFile dataFile;
+        int[] window;
+        try {
+            dataFile = DataFileParser.parseLazily(fname);
+            window = findWindow(dataFile.getYears());
+        } catch (RuntimeException e) {
+            failPhase(clock, ControllerPhase.READ_DATA, e);
+            throw e;
+        }
+        endPhase(clock, ControllerPhase.READ_DATA, 0, 0);
+        String[] fileYears = dataFile.getYears();
+
+        List<ModelBinding.BoundField> arrayFields = new ArrayList<>();
+        for (ModelBinding.BoundField field : binding.getFields()) {
+            if (!field.isLL()) {
+                arrayFields.add(field);
+            }
+        }
+        double[][] previous = new double[arrayFields.size()][];
+        for (int first = window[0]; first < window[1]; first += chunkYears) {
+            int end = Math.min(first + chunkYears, window[1]);
+            int carried = Math.min(lag, first - window[0]);
+            int LL = carried + end - first;
+
+            //carried years keep the values computed by the previous chunk, inputs included
+            clock = startPhase();
             try {
-                if (field.isAnnotationPresent(Bind.class)) {
-                    field.setAccessible(true);
-                    String fieldName = field.getName();
-                    if (fieldName.equals("LL")) {
-                        field.set(modelInstance, LL);
-                    }
-                    else {
-                        field.set(modelInstance, dataVariables.get(fieldName) == null ? new double[LL] : dataVariables.get(fieldName));
+                for (int i = 0; i < arrayFields.size(); i++) {
+                    double[] values = new double[LL];
+                    if (carried > 0 && previous[i] != null) {
+                        System.arraycopy(previous[i], previous[i].length - carried, values, 0, carried);
                     }
+                    dataFile.readChunk(arrayFields.get(i).name(), first, end, values, carried);
+                    arrayFields.get(i).set(modelInstance, values);
+                }
+                binding.setLL(modelInstance, LL);
+            } catch (RuntimeException e) {
+                failPhase(clock, ControllerPhase.READ_DATA, e);
+                throw e;
+            }
+            endPhase(clock, ControllerPhase.READ_DATA, arrayFields.size(), (long) arrayFields.size() * LL);
+            years = Arrays.copyOfRange(fileYears, first - carried, end);
+
+            executeModel();
+
+            List<String> rowNames = new ArrayList<>();
+            List<double[]> rowValues = new ArrayList<>();
+            if (binding.getLLField() != null) {
+                rowNames.add(binding.getLLField().name());
+                rowValues.add(null);
+            }
+            for (int i = 0; i < arrayFields.size(); i++) {
+                double[] values = arrayFields.get(i).getValues(modelInstance);
+                previous[i] = values != null && values.length >= carried ? values : null;
+                if (values != null) {
+                    rowNames.add(arrayFields.get(i).name());
+                    rowValues.add(Arrays.copyOfRange(values, Math.min(carried, values.length), values.length));
                 }
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException("Illegal access while reading field: " + field.getName());
             }
+            chunkConsumer.accept(new Results(Arrays.copyOfRange(fileYears, first, end), rowNames, rowValues));
+        }
+
+        //model holds only the last chunk, the next incremental run starts from scratch
+        if (incrementalRuns != null) {
+            useIncrementalRuns(true);
         }
         return this;
     }
 
+    //indexes of the first (inclusive) and last (exclusive) year of the window in the years of a file
+    private int[] findWindow(String[] fileYears) {
+        int first = 0;
+        int end = fileYears.length;
+        if (firstYear != null) {
+            first = Arrays.asList(fileYears).indexOf(firstYear);
+            if (first < 0) {
+                throw new RuntimeException("Year " + firstYear + " not found in the data file");
+            }
+        }
+        if (lastYear != null) {
+            end = Arrays.asList(fileYears).indexOf(lastYear) + 1;
+            if (end == 0) {
+                throw new RuntimeException("Year " + lastYear + " not found in the data file");
+            }
+        }
+        if (first >= end) {
+            throw new RuntimeException("Year " + firstYear + " comes after year " + lastYear);
+        }
+        return new int[] {first, end};
+    }
+
     public Controller runModel() {
-        try {
-            //executing run method
-            modelInstance.getClass().getMethod("run").invoke(modelInstance);
-        } catch (InvocationTargetException e) {
-            throw new RuntimeException("Error happened during invocation of run method");
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException("Illegal access while invoking run method");
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException("No run method found");
+        ensureOpen();
+        String key = nextResultKey("model");
+        resultKey = null;
+        if (incrementalRuns != null && incrementalRuns.skipModel(modelInstance)) {
+            resultKey = key;
+            return this;
+        }
+        if (!restoreResults(key)) {
+            executeModel();
+            storeResults(key);
         }
+        if (incrementalRuns != null) {
+            incrementalRuns.modelRun(modelInstance);
+        }
+        resultKey = key;
         return this;
     }
 
-    public Controller runScriptFromFile(String fname) {
-        String script;
+    private void executeModel() {
+        PhaseClock clock = startPhase();
 
-        //reading script
+        //executing run method
         try {
-            script = Files.readString(Path.of(fname));
+            binder.run(modelInstance);
+        } catch (RuntimeException e) {
+            failPhase(clock, ControllerPhase.RUN_MODEL, e);
+            throw e;
         }
-        catch (IOException e) {
-            throw new RuntimeException("Error while reading script file");
+
+        if (clock != null) {
+            int variables = 0;
+            long elements = 0;
+            for (ModelBinding.BoundField field : binding.getFields()) {
+                if (!field.isLL() && field.get(modelInstance) instanceof double[] values) {
+                    variables++;
+                    elements += values.length;
+                }
+            }
+            endPhase(clock, ControllerPhase.RUN_MODEL, variables, elements);
         }
+    }
 
-        //executing script
-        return runScript(script);
+    public Controller runScriptFromFile(String fname) {
+        //executing script with the runner of its extension
+        ScriptSource script = ScriptSource.fromFile(fname);
+        return runScript(script.text(), script.runner());
     }
 
     public Controller runScript(String script) {
-        //creating groovy engine
-        ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
-        ScriptEngine scriptEngine = scriptEngineManager.getEngineByName("groovy");
-        if (scriptEngine == null) {
-            throw new RuntimeException("Script engine not found");
+        return runScript(script, ScriptRunners.getDefault());
+    }
+
+    //language of one of the ScriptRunners, like groovy or python
+    public Controller runScript(String script, String language) {
+        return runScript(script, ScriptRunners.forLanguage(language));
+    }
+
+    public Controller runScript(String script, ScriptRunner runner) {
+        ensureOpen();
+        checkSandboxed(runner);
+        String key = nextResultKey(runner.getLanguage(), ScriptCache.hash(script));
+        resultKey = null;
+
+        //outputs of the previous run are published again when nothing the script reads has changed
+        if (incrementalRuns != null) {
+            Map<String, Object> outputs = incrementalRuns.reusableOutputs(script, runner);
+            if (outputs != null) {
+                publish(outputs);
+                resultKey = key;
+                return this;
+            }
+        }
+
+        if (!restoreResults(key)) {
+            if (runner instanceof GroovyScriptRunner) {
+                executeScript(script);
+            }
+            else {
+                executeScript(script, runner);
+            }
+            storeResults(key);
+        }
+        if (incrementalRuns != null) {
+            incrementalRuns.scriptRun(script, runner);
+        }
+        resultKey = key;
+        return this;
+    }
+
+    private String nextResultKey(String... step) {
+        return resultKey == null ? null : ResultCache.chain(resultKey, step);
+    }
+
+    //model and script variables stored after the same step over the same model, data and earlier steps
+    private boolean restoreResults(String key) {
+        if (key == null) {
+            return false;
+        }
+        BinaryResultsFile cached = resultCache.get(key);
+        if (cached == null) {
+            return false;
+        }
+        VariableStore modelValues = VariableStore.onHeap();
+        Map<String, Object> scriptValues = new LinkedHashMap<>();
+        for (String name : cached.getVariableNames()) {
+            if (binding.getField(name) != null) {
+                modelValues.put(name, cached.get(name));
+            }
+            else {
+                scriptValues.put(name, cached.get(name));
+            }
         }
+        years = cached.getYears();
+        binder.writeFrom(modelInstance, modelValues, years.length);
+        publish(scriptValues);
+        return true;
+    }
 
-        //retrieving and filling all variables with data
-        Set<String> scriptVariables = retrieveVariablesFromScript(script);
-        passVariablesFromModel(scriptEngine, scriptVariables);
+    private void storeResults(String key) {
+        if (key != null) {
+            resultCache.put(key, output -> {
+                try {
+                    writeBinary(output);
+                } catch (IOException e) {
+                    throw new RuntimeException("Error occurred while writing results", e);
+                }
+            });
+        }
+    }
 
-        //computing data from script
+    //scripts of other languages go straight to their runner, which keeps its engines warm
+    private void executeScript(String script, ScriptRunner runner) {
+        scriptBindings.beginRun();
         try {
-            scriptEngine.eval(script);
-        } catch (ScriptException e) {
-            throw new RuntimeException("Error while executing groovy script");
+            evalWithRunner(script, runner, scriptBindings);
+        } catch (RuntimeException e) {
+            scriptBindings.rollback();
+            throw e;
         }
+        commitScript();
+    }
 
-        //writing computed data to the variable
-        for (String variable : scriptVariables) {
-            double[] value = (double[])scriptEngine.get(variable);
-            if (value != null) {
-                allScriptVariables.put(variable, value);
+    private void evalWithRunner(String script, ScriptRunner runner, Bindings bindings) {
+        PhaseClock clock = startPhase();
+        try {
+            runner.run(script, bindings);
+        } catch (ScriptException | RuntimeException e) {
+            RuntimeException error = new RuntimeException("Error while executing " + runner.getLanguage() + " script", e);
+            failPhase(clock, ControllerPhase.SCRIPT_EVAL, error);
+            throw error;
+        }
+        endPhase(clock, ControllerPhase.SCRIPT_EVAL, 0, 0);
+    }
+
+    //time and array limits are put into groovy code when it is compiled, engines of other languages
+    //can't be limited, so a sandboxed controller refuses their scripts instead of running them unchecked
+    private void checkSandboxed(ScriptRunner runner) {
+        if (sandbox != null && !(runner instanceof GroovyScriptRunner)) {
+            throw new ScriptLimitException(ScriptLimitException.Limit.LANGUAGE,
+                    "Sandbox runs only groovy scripts, " + runner.getLanguage() + " scripts are refused");
+        }
+    }
+
+    //groovy goes through the cache and sandbox of this controller, or the vectorized fast path
+    private void executeScript(String script) {
+        //element-wise scripts can skip the groovy engine entirely
+        if (vectorizedScripts) {
+            scriptBindings.beginRun();
+            boolean executed;
+            try {
+                executed = evalVectorized(script, scriptBindings);
+            } catch (RuntimeException e) {
+                scriptBindings.rollback();
+                throw e;
             }
+            if (executed) {
+                commitScript();
+                return;
+            }
+            //variables didn't match what the script expects, groovy will run it and report errors if any
+            scriptBindings.rollback();
         }
 
-        return this;
+        //computing data from script, bindings of the controller already see all model and script variables
+        scriptBindings.beginRun();
+        try {
+            evalCompiled(script, scriptBindings);
+        } catch (RuntimeException e) {
+            scriptBindings.rollback();
+            throw e;
+        }
+
+        //publishing only variables which were assigned by the script
+        commitScript();
+    }
+
+    //script of a pipeline run on bindings of its own, with the same compilation, sandbox and phases
+    //as runScript; nothing is published
+    void evalScript(String script, ScriptRunner runner, Bindings bindings) {
+        ensureOpen();
+        checkSandboxed(runner);
+        if (!(runner instanceof GroovyScriptRunner)) {
+            evalWithRunner(script, runner, bindings);
+        }
+        else if (!(vectorizedScripts && evalVectorized(script, bindings))) {
+            evalCompiled(script, bindings);
+        }
+    }
+
+    private void evalCompiled(String script, Bindings bindings) {
+        //taking compiled script from the cache, compiling it only on the first run
+        PhaseClock clock = startPhase();
+        CompiledScript compiledScript;
+        try {
+            compiledScript = getCache().compile(script);
+        } catch (RuntimeException e) {
+            failPhase(clock, ControllerPhase.SCRIPT_COMPILE, e);
+            throw e;
+        }
+        endPhase(clock, ControllerPhase.SCRIPT_COMPILE, 0, 0);
+
+        clock = startPhase();
+        try {
+            if (sandbox != null) {
+                sandbox.eval(compiledScript, bindings);
+            }
+            else {
+                compiledScript.eval(bindings);
+            }
+        } catch (ScriptException | RuntimeException e) {
+            //limit violations keep their type, so callers can tell them from errors of the script itself
+            RuntimeException error = e instanceof ScriptLimitException limitException
+                    ? limitException
+                    : new RuntimeException("Error while executing groovy script", e);
+            failPhase(clock, ControllerPhase.SCRIPT_EVAL, error);
+            throw error;
+        }
+        endPhase(clock, ControllerPhase.SCRIPT_EVAL, 0, 0);
+    }
+
+    //false when the script can't be vectorized or its variables don't fit, the bindings are untouched then
+    private boolean evalVectorized(String script, Bindings bindings) {
+        PhaseClock clock = startPhase();
+        VectorizedScript vectorizedScript = scriptCache.compileVectorized(script);
+        if (vectorizedScript == null) {
+            return false;
+        }
+        endPhase(clock, ControllerPhase.SCRIPT_COMPILE, 0, 0);
+
+        clock = startPhase();
+        boolean executed;
+        try {
+            executed = vectorizedScript.execute(bindings, sandbox);
+        } catch (RuntimeException e) {
+            RuntimeException error = e instanceof ScriptLimitException limitException
+                    ? limitException
+                    : new RuntimeException("Error while executing vectorized script", e);
+            failPhase(clock, ControllerPhase.SCRIPT_EVAL, error);
+            throw error;
+        }
+        if (executed) {
+            endPhase(clock, ControllerPhase.SCRIPT_EVAL, 0, 0);
+        }
+        return executed;
+    }
+
+    private void commitScript() {
+        PhaseClock clock = startPhase();
+        Set<String> published;
+        try {
+            published = scriptBindings.commit();
+        } catch (RuntimeException e) {
+            failPhase(clock, ControllerPhase.SCRIPT_COMMIT, e);
+            throw e;
+        }
+
+        if (clock != null) {
+            long elements = 0;
+            for (String variable : published) {
+                if (readVariable(variable) instanceof double[] values) {
+                    elements += values.length;
+                }
+            }
+            endPhase(clock, ControllerPhase.SCRIPT_COMMIT, published.size(), elements);
+        }
     }
 
     public String getResultsAsTsv() {
-        String returnString = "";
+        StringBuilder returnString = new StringBuilder();
+        writeResultsTo(returnString);
+        return returnString.toString();
+    }
 
-        //writing calculated data from model
+    public Controller writeResultsTo(OutputStream outputStream) {
+        //writer is only flushed, closing the stream is up to the caller
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writeResultsTo(writer);
         try {
-            for (Field field : modelInstance.getClass().getDeclaredFields()) {
-                if (field.isAnnotationPresent(Bind.class)) {
-                    field.setAccessible(true);
-                    String fieldName = field.getName();
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Error occurred while writing results", e);
+        }
+        return this;
+    }
 
-                    if (fieldName.equals("LL")) {
-                        returnString += fieldName + "\t" + years + "\n";
-                    }
-                    else if (field.get(modelInstance) != null) {
-                        double[] values = (double[]) field.get(modelInstance);
-                        returnString += fieldName + "\t";
-                        for (double value : values) {
-                            returnString += value + " ";
-                        }
-                        returnString += "\n";
+    public Controller writeResultsTo(Appendable sink) {
+        ensureOpen();
+        PhaseClock clock = startPhase();
+        TsvWriter tsvWriter = new TsvWriter(sink);
+        VariableStore modelVariables = readModelVariables();
+        try {
+            //writing calculated data from model
+            for (ModelBinding.BoundField field : binding.getFields()) {
+                if (field.isLL()) {
+                    tsvWriter.writeYears(field.name(), getYearsArray());
+                }
+                else {
+                    int id = modelVariables.id(field.name());
+                    if (id >= 0) {
+                        tsvWriter.writeValues(field.name(), modelVariables, id);
                     }
                 }
             }
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException("Illegal access while accessing model variables");
-        }
 
-        //writing additional data from scripts(if exists)
-        for (String variable : allScriptVariables.keySet()) {
-            returnString += variable + "\t";
-            for (double value : allScriptVariables.get(variable)) {
-                returnString += value + " ";
+            //writing additional data from scripts(if exists)
+            for (String variable : allScriptVariables.names()) {
+                tsvWriter.writeValues(variable, allScriptVariables, allScriptVariables.id(variable));
             }
-            returnString += "\n";
+        } catch (IOException e) {
+            RuntimeException error = new RuntimeException("Error occurred while writing results", e);
+            failPhase(clock, ControllerPhase.EXPORT_RESULTS, error);
+            throw error;
         }
+        endExportPhase(clock);
+        return this;
+    }
 
-        return returnString;
+    //same rows as the TSV export, years go to the header instead of the LL row
+    public Controller writeBinaryResultsTo(OutputStream outputStream) {
+        ensureOpen();
+        PhaseClock clock = startPhase();
+        try {
+            writeBinary(outputStream);
+        } catch (IOException e) {
+            RuntimeException error = new RuntimeException("Error occurred while writing results", e);
+            failPhase(clock, ControllerPhase.EXPORT_RESULTS, error);
+            throw error;
+        }
+        endExportPhase(clock);
+        return this;
     }
 
-    private Set<String> retrieveVariablesFromScript(String script) {
-        Set<String> variables = new HashSet<>();
+    private void writeBinary(OutputStream outputStream) throws IOException {
+        VariableStore modelVariables = readModelVariables();
+        List<String> names = new ArrayList<>();
+        List<Integer> modelIds = new ArrayList<>();
+        for (ModelBinding.BoundField field : binding.getFields()) {
+            int id = field.isLL() ? -1 : modelVariables.id(field.name());
+            if (id >= 0) {
+                names.add(field.name());
+                modelIds.add(id);
+            }
+        }
+        List<String> scriptVariables = allScriptVariables.names();
+        names.addAll(scriptVariables);
+
+        int[] lengths = new int[names.size()];
+        for (int i = 0; i < modelIds.size(); i++) {
+            lengths[i] = modelVariables.length(modelIds.get(i));
+        }
+        for (int i = 0; i < scriptVariables.size(); i++) {
+            lengths[modelIds.size() + i] = allScriptVariables.length(allScriptVariables.id(scriptVariables.get(i)));
+        }
 
-        // Split the script into tokens by whitespace and special characters
-        String[] tokens = script.split("[\\s\\W]+");
+        BinaryResultsWriter binaryWriter = new BinaryResultsWriter(outputStream);
+        ModelBinding.BoundField llField = binding.getLLField();
+        binaryWriter.writeHeader(llField == null ? null : llField.name(), years, names, lengths);
+        for (int id : modelIds) {
+            binaryWriter.writeColumn(modelVariables, id);
+        }
+        for (String variable : scriptVariables) {
+            binaryWriter.writeColumn(allScriptVariables, allScriptVariables.id(variable));
+        }
+        binaryWriter.finish();
+    }
 
-        for (String token : tokens) {
-            // Add to variables if it's not a single lowercase letter and starts with a valid identifier character
-            if (token.matches("[a-zA-Z_][a-zA-Z0-9_]*")
-                    && !(token.length() == 1 && Character.isLowerCase(token.charAt(0)))
-                    && !GROOVY_KEYWORDS.contains(token)) {
-                variables.add(token);
+    public Results getResults() {
+        ensureOpen();
+        PhaseClock clock = startPhase();
+        List<String> rowNames = new ArrayList<>();
+        List<double[]> rowValues = new ArrayList<>();
+        VariableStore modelVariables = readModelVariables();
+
+        //taking calculated data from model
+        for (ModelBinding.BoundField field : binding.getFields()) {
+            if (field.isLL()) {
+                rowNames.add(field.name());
+                rowValues.add(null);
+            }
+            else {
+                int id = modelVariables.id(field.name());
+                if (id >= 0) {
+                    rowNames.add(field.name());
+                    rowValues.add(modelVariables.toArray(id));
+                }
             }
         }
 
-        return variables;
+        //taking additional data from scripts(if exists)
+        for (String variable : allScriptVariables.names()) {
+            rowNames.add(variable);
+            rowValues.add(allScriptVariables.toArray(allScriptVariables.id(variable)));
+        }
+
+        Results results = new Results(getYearsArray(), rowNames, rowValues);
+        endExportPhase(clock);
+        return results;
     }
 
-    private void passVariablesFromModel(ScriptEngine groovyEngine, Set<String> variables) {
-        Iterator<String> iterator = variables.iterator();
-        while (iterator.hasNext()) {
-            String variable = iterator.next();
-            try {
-                Field field = modelInstance.getClass().getDeclaredField(variable);
-                if (field.isAnnotationPresent(Bind.class)) {
-                    field.setAccessible(true);
+    //model variables are read by the binder in one pass, exports then go through the store like script variables
+    private VariableStore readModelVariables() {
+        binder.readInto(modelInstance, modelVariables);
+        return modelVariables;
+    }
 
-                    //passing the variable to the script engine
-                    groovyEngine.put(variable, field.get(modelInstance));
+    //model and script variables after a run without building Results, stores are reused by the next call
+    VariableStore getModelVariables() {
+        ensureOpen();
+        return readModelVariables();
+    }
 
-                    //removing the variable using the iterator
-                    iterator.remove();
-                } else {
-                    throw new NoSuchFieldException();
-                }
-            } catch (NoSuchFieldException e) {
-                //ignored, as many fields won't be accessible or invisible because of having no annotation
+    VariableStore getScriptVariables() {
+        return allScriptVariables;
+    }
 
-                //also trying to find it map of variables from scripts
-                if (allScriptVariables.containsKey(variable)) {
-                    groovyEngine.put(variable, allScriptVariables.get(variable));
-                }
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException("Variable you're trying to reach is inaccessible");
+    //listeners are added to this controller only, batch runs add them to the controller of every job
+    public Controller addListener(ControllerListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public Controller removeListener(ControllerListener listener) {
+        listeners.remove(listener);
+        return this;
+    }
+
+    //nothing is measured while there are no listeners
+    private PhaseClock startPhase() {
+        return listeners.isEmpty() ? null : PhaseClock.start();
+    }
+
+    private void endPhase(PhaseClock clock, ControllerPhase phase, int variables, long elements) {
+        if (clock != null) {
+            notifyListeners(new PhaseMetrics(binding.getModelClass().getName(), phase,
+                    clock.elapsedNanos(), clock.allocatedBytes(), variables, elements, null));
+        }
+    }
+
+    private void failPhase(PhaseClock clock, ControllerPhase phase, Throwable error) {
+        if (clock != null) {
+            notifyListeners(new PhaseMetrics(binding.getModelClass().getName(), phase,
+                    clock.elapsedNanos(), clock.allocatedBytes(), 0, 0, error));
+        }
+    }
+
+    private void endExportPhase(PhaseClock clock) {
+        if (clock == null) {
+            return;
+        }
+        int variables = 0;
+        long elements = 0;
+        for (ModelBinding.BoundField field : binding.getFields()) {
+            if (!field.isLL() && field.get(modelInstance) instanceof double[] values) {
+                variables++;
+                elements += values.length;
             }
+        }
+        for (String variable : allScriptVariables.names()) {
+            variables++;
+            elements += allScriptVariables.length(allScriptVariables.id(variable));
+        }
+        endPhase(clock, ControllerPhase.EXPORT_RESULTS, variables, elements);
+    }
+
+    private void notifyListeners(PhaseMetrics metrics) {
+        for (ControllerListener listener : listeners) {
+            listener.phaseCompleted(metrics);
+        }
+    }
+
+    private String[] getYearsArray() {
+        return years.clone();
+    }
+
+    //script variables already computed are moved into the new store
+    public Controller withVariableStore(VariableStore variableStore) {
+        ensureOpen();
+        variableStore.putAll(allScriptVariables);
+        allScriptVariables = variableStore;
+        scriptBindings = new ScriptBindings(modelInstance, binding, allScriptVariables);
+        return this;
+    }
+
+    //element-wise arithmetic scripts are run by compiled array kernels, other scripts still go to groovy
+    public Controller useVectorizedScripts(boolean vectorizedScripts) {
+        this.vectorizedScripts = vectorizedScripts;
+        return this;
+    }
+
+    //data files are read only from the first to the last year (both inclusive), null leaves that end open
+    //the first year of the window is the first year the model sees, arrays and exports cover only the window
+    public Controller useYearWindow(String firstYear, String lastYear) {
+        this.firstYear = firstYear;
+        this.lastYear = lastYear;
+        return this;
+    }
+
+    //reruns after reading changed data skip the model and scripts none of whose inputs changed,
+    //models can declare which computed fields depend on which inputs with @DependsOn
+    public Controller useIncrementalRuns(boolean incremental) {
+        this.incrementalRuns = incremental ? new IncrementalRuns(binding, this::readVariable) : null;
+        return this;
+    }
+
+    public long getSkippedModelRuns() {
+        return incrementalRuns == null ? 0 : incrementalRuns.getSkippedModelRuns();
+    }
+
+    public long getSkippedScripts() {
+        return incrementalRuns == null ? 0 : incrementalRuns.getSkippedScripts();
+    }
+
+    //by default all controllers share one cache, a separate one keeps scripts of this controller apart
+    public Controller withScriptCache(ScriptCache scriptCache) {
+        this.scriptCache = scriptCache;
+        return this;
+    }
+
+    //groovy scripts run on the threads of the sandbox within its limits, null runs them on the caller's thread
+    //vectorized scripts run on the caller's thread, the arrays they create are checked against the array limits
+    //of the sandbox and their loops never run past the length of those arrays
+    public Controller useSandbox(ScriptSandbox sandbox) {
+        this.sandbox = sandbox;
+        return this;
+    }
+
+    //runs of the model and scripts over a data file are skipped when the cache holds their results, which are stored
+    //after every step otherwise; takes effect from the next data file read, null stops caching
+    public Controller useResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+        this.resultKey = null;
+        return this;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public static ScriptCache getScriptCache() {
+        return ScriptCache.getShared();
+    }
+
+    //cache groovy scripts of this controller are compiled by, the sandbox's own one when there is a sandbox
+    ScriptCache getCache() {
+        return sandbox != null ? sandbox.getCache() : scriptCache;
+    }
 
+    //model or script variable, null when there is none with that name
+    Object readVariable(String name) {
+        ensureOpen();
+        ModelBinding.BoundField field = binding.getField(name);
+        if (field != null) {
+            return field.get(modelInstance);
         }
+        return allScriptVariables.toArray(name);
     }
 
+    boolean isVariable(String name) {
+        return binding.getField(name) != null || allScriptVariables.contains(name);
+    }
 
+    //values computed by a pipeline of scripts; with a result cache the whole pipeline is one step,
+    //so it is skipped when the cache holds its results
+    Controller runPipeline(List<ScriptSource> scripts, Supplier<Map<String, Object>> pipeline) {
+        ensureOpen();
+        List<String> step = new ArrayList<>();
+        step.add("pipeline");
+        for (ScriptSource script : scripts) {
+            checkSandboxed(script.runner());
+            step.add(script.runner().getLanguage());
+            step.add(ScriptCache.hash(script.text()));
+        }
+        String key = nextResultKey(step.toArray(new String[0]));
+        resultKey = null;
+        if (!restoreResults(key)) {
+            publish(pipeline.get());
+            storeResults(key);
+        }
+        resultKey = key;
+        return this;
+    }
+
+    //publishes values computed outside of this controller, with the same checks as assignments in a script
+    private void publish(Map<String, Object> variables) {
+        scriptBindings.beginRun();
+        try {
+            for (Map.Entry<String, Object> variable : variables.entrySet()) {
+                scriptBindings.put(variable.getKey(), variable.getValue());
+            }
+            scriptBindings.commit();
+        } catch (RuntimeException e) {
+            scriptBindings.rollback();
+            throw e;
+        }
+    }
+
+    //rules of the default runner, for code which handles only groovy scripts
+    static boolean isScriptKeyword(String token) {
+        return ScriptRunners.getDefault().isScriptKeyword(token);
+    }
+
+    static Set<String> retrieveAssignedVariablesFromScript(String script) {
+        return ScriptRunners.getDefault().retrieveAssignedVariables(script);
+    }
+
+    static Set<String> retrieveReadVariablesFromScript(String script) {
+        return ScriptRunners.getDefault().retrieveReadVariables(script);
+    }
+
+    static Set<String> retrieveVariablesFromScript(String script) {
+        return ScriptRunners.getDefault().retrieveVariables(script);
+    }
 }
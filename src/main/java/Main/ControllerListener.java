@@ -0,0 +1,8 @@
+package Main;
+
+//receives metrics of every phase of the controllers it is added to, batch runs call it from many threads at once
+@FunctionalInterface
+public interface ControllerListener {
+
+    void phaseCompleted(PhaseMetrics metrics);
+}
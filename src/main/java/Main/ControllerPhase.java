@@ -0,0 +1,17 @@
+package Main;
+
+//parts of a controller run which are reported to listeners
+public enum ControllerPhase {
+    READ_DATA,
+    RUN_MODEL,
+
+    //script is taken from the cache, compiled (and the engine created) only on a miss
+    SCRIPT_COMPILE,
+    SCRIPT_EVAL,
+
+    //assigned variables are copied back into the model and the script variables
+    SCRIPT_COMMIT,
+
+    //TSV or binary export, or a Results snapshot
+    EXPORT_RESULTS
+}
@@ -0,0 +1,40 @@
+package Main;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("reflectivescripting.ControllerPhase")
+@Label("Controller Phase")
+@Category("Reflective Scripting")
+@Description("One phase of a controller run")
+@StackTrace(false)
+final class ControllerPhaseEvent extends jdk.jfr.Event {
+
+    @Label("Model")
+    String model;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Wall Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long wallTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+
+    @Label("Variables")
+    int variables;
+
+    @Label("Elements")
+    long elements;
+
+    @Label("Successful")
+    boolean successful;
+}
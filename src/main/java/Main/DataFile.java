@@ -0,0 +1,199 @@
+package Main;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//parsed content of a data file: years from the LATA line and values of every variable
+//a lazily read file (see DataFileParser.parseLazily) parses a variable only the first time it is requested,
+//such a file is meant to be used by one thread
+public final class DataFile {
+
+    private final String[] years;
+    private final VariableStore variables;
+    private final DataIndex index;
+    private final DataFileParser parser;
+    //years of the indexed file seen through this one, a window of a lazy file parses only values up to its end
+    private final int from;
+    private final int to;
+    private double[] lineValues;
+    private Map<String, Cursor> cursors;
+
+    public DataFile(String[] years, Map<String, double[]> variables) {
+        this.years = years.clone();
+        this.variables = VariableStore.onHeap();
+        for (Map.Entry<String, double[]> variable : variables.entrySet()) {
+            this.variables.put(variable.getKey(), variable.getValue());
+        }
+        this.index = null;
+        this.parser = null;
+        this.from = 0;
+        this.to = this.years.length;
+    }
+
+    DataFile(String[] years, VariableStore variables) {
+        this.years = years;
+        this.variables = variables;
+        this.index = null;
+        this.parser = null;
+        this.from = 0;
+        this.to = years.length;
+    }
+
+    DataFile(DataIndex index, DataFileParser parser) {
+        this(index, parser, 0, index.getLL());
+    }
+
+    private DataFile(DataIndex index, DataFileParser parser, int from, int to) {
+        this.years = Arrays.copyOfRange(index.getYears(), from, to);
+        this.variables = VariableStore.onHeap();
+        this.index = index;
+        this.parser = parser;
+        this.from = from;
+        this.to = to;
+    }
+
+    //years from (inclusive) to (exclusive), every variable is cut the same way
+    //a lazy file stays lazy, values past the window aren't parsed at all
+    DataFile window(int first, int end) {
+        if (first < 0 || end > years.length || first > end) {
+            throw new IllegalArgumentException("Invalid window " + first + ".." + end + " of " + years.length + " years");
+        }
+        if (index != null) {
+            return new DataFile(index, parser, from + first, from + end);
+        }
+        VariableStore sliced = VariableStore.onHeap();
+        for (String name : variables.names()) {
+            double[] values = variables.toArray(name);
+            int length = Math.max(0, Math.min(values.length, end) - first);
+            sliced.put(name, Arrays.copyOfRange(values, Math.min(first, values.length), Math.min(first, values.length) + length));
+        }
+        return new DataFile(Arrays.copyOfRange(years, first, end), sliced);
+    }
+
+    public int getLL() {
+        return years.length;
+    }
+
+    public String[] getYears() {
+        return years.clone();
+    }
+
+    public List<String> getVariableNames() {
+        return index == null ? variables.names() : index.getNames();
+    }
+
+    public boolean contains(String variable) {
+        return index == null ? variables.contains(variable) : index.find(variable) >= 0;
+    }
+
+    //every call returns a new copy, so it can be handed to a model directly
+    public double[] get(String variable) {
+        load(variable);
+        return variables.toArray(variable);
+    }
+
+    public boolean isLazy() {
+        return index != null;
+    }
+
+    //number of variables parsed so far, all of them for files which aren't lazy
+    public int getLoadedCount() {
+        return variables.size();
+    }
+
+    //parses the variable if it wasn't parsed yet, names missing from the file are skipped
+    void load(String name) {
+        if (index == null || variables.contains(name)) {
+            return;
+        }
+        int entry = index.find(name);
+        if (entry < 0) {
+            return;
+        }
+        int length = Math.min(index.getLength(entry), to);
+        if (lineValues == null || lineValues.length < length) {
+            lineValues = new double[Math.max(length, to)];
+        }
+        parser.readValuesAt(index, entry, lineValues, length);
+
+        //values before the window are parsed only to be dropped
+        int windowLength = Math.max(0, length - from);
+        System.arraycopy(lineValues, Math.min(from, length), lineValues, 0, windowLength);
+        variables.put(name, lineValues, windowLength);
+    }
+
+    //copies values of years from (inclusive) to (exclusive) into the target, zeros for a missing variable
+    //a lazy file parses only those years, continuing where the previous chunk of the variable ended
+    void readChunk(String name, int first, int end, double[] target, int offset) {
+        if (index == null) {
+            int id = variables.id(name);
+            int length = id < 0 ? 0 : variables.length(id);
+            for (int year = first; year < end; year++) {
+                target[offset + year - first] = year < length ? variables.get(id, year) : 0.0;
+            }
+            return;
+        }
+
+        int entry = index.find(name);
+        if (entry < 0) {
+            Arrays.fill(target, offset, offset + end - first, 0.0);
+            return;
+        }
+        if (cursors == null) {
+            cursors = new HashMap<>();
+        }
+        Cursor cursor = cursors.get(name);
+        if (cursor == null || from + first < cursor.next) {
+            cursor = new Cursor(index.getValueStart(entry), index.getLineStart(entry), index.getLine(entry));
+            cursors.put(name, cursor);
+        }
+
+        //same rules as a whole line: missing values repeat the last one, values past the line length are zero
+        int length = index.getLength(entry);
+        parser.moveTo(cursor.position, cursor.lineStart, cursor.line);
+        double[] value = new double[1];
+        for (int year = cursor.next; year < from + end; year++) {
+            double current;
+            if (year >= length) {
+                current = 0.0;
+            }
+            else if (!cursor.ended && parser.readNextValue(value)) {
+                current = value[0];
+            }
+            else {
+                cursor.ended = true;
+                current = year == 0 ? 0.0 : cursor.last;
+            }
+            cursor.last = current;
+            if (year >= from + first) {
+                target[offset + year - from - first] = current;
+            }
+        }
+        cursor.next = Math.max(cursor.next, from + end);
+        cursor.position = parser.getPosition();
+    }
+
+    //variables parsed so far, lazy files have to load the needed ones first
+    VariableStore getVariables() {
+        return variables;
+    }
+
+    //place in a line of the indexed file where the next chunk of that variable starts
+    private static final class Cursor {
+
+        int position;
+        final int lineStart;
+        final int line;
+        int next = 0;
+        double last = 0.0;
+        boolean ended = false;
+
+        Cursor(int position, int lineStart, int line) {
+            this.position = position;
+            this.lineStart = lineStart;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package Main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//tokenizes data files directly from bytes, doubles are parsed without intermediate Strings
+public final class DataFileParser {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    //largest significand which is still exactly representable as a double
+    private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+
+    private final ByteBuffer buffer;
+    private final String source;
+    private int position;
+    private int line = 1;
+    private int lineStart;
+
+    DataFileParser(ByteBuffer buffer, String source) {
+        this.buffer = buffer;
+        this.source = source;
+        this.position = buffer.position();
+        this.lineStart = position;
+    }
+
+    public static DataFile parse(String fname) {
+        return parse(Path.of(fname));
+    }
+
+    //binary results files (see BinaryResultsWriter) are accepted as data as well, recognized by their magic bytes
+    public static DataFile parse(Path path) {
+        MappedByteBuffer buffer = map(path);
+        if (BinaryResultsFile.isBinary(buffer)) {
+            return new BinaryResultsFile(buffer, path.toString()).toDataFile();
+        }
+        return new DataFileParser(buffer, path.toString()).parseAll();
+    }
+
+    public static DataFile parseLazily(String fname) {
+        return parseLazily(Path.of(fname));
+    }
+
+    //only the index of the file is built (or taken from the cache), series are parsed when they are requested
+    //binary results files are already columnar, they are read as a whole
+    public static DataFile parseLazily(Path path) {
+        MappedByteBuffer buffer = map(path);
+        if (BinaryResultsFile.isBinary(buffer)) {
+            return new BinaryResultsFile(buffer, path.toString()).toDataFile();
+        }
+        return new DataFile(DataIndex.of(path, buffer), new DataFileParser(buffer, path.toString()));
+    }
+
+    static MappedByteBuffer map(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new RuntimeException("Data file is too large:\n" + path);
+            }
+            //mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("File not found:\n" + path, e);
+        } catch (IOException e) {
+            throw new RuntimeException("Error occurred while reading from file", e);
+        }
+    }
+
+    DataFile parseAll() {
+        String[] years = new String[0];
+        VariableStore variables = VariableStore.onHeap();
+
+        //values of every line are parsed into the same buffer and copied into the store
+        double[] lineValues = new double[0];
+
+        while (position < buffer.limit()) {
+            skipSpaces();
+            if (atLineEnd()) {
+                nextLine();
+                continue;
+            }
+
+            String name = readToken();
+            if (name.equals("LATA")) {
+                years = readYears();
+                lineValues = new double[years.length];
+            }
+            else {
+                readValues(lineValues, years.length);
+                variables.put(name, lineValues, years.length);
+            }
+            nextLine();
+        }
+        return new DataFile(years, variables);
+    }
+
+    //scans the file without parsing any values, years are read as in parseAll
+    DataIndex index(FileTime modified) {
+        String[] years = new String[0];
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> entries = new HashMap<>();
+        int[] lineStarts = new int[64];
+        int[] valueStarts = new int[64];
+        int[] lines = new int[64];
+        int[] lengths = new int[64];
+
+        while (position < buffer.limit()) {
+            int start = lineStart;
+            skipSpaces();
+            if (atLineEnd()) {
+                nextLine();
+                continue;
+            }
+
+            String name = readToken();
+            if (name.equals("LATA")) {
+                years = readYears();
+            }
+            else {
+                //repeated names keep the place of their first line and the values of their last one
+                Integer entry = entries.get(name);
+                if (entry == null) {
+                    entry = names.size();
+                    names.add(name);
+                    entries.put(name, entry);
+                    if (entry == lines.length) {
+                        lineStarts = Arrays.copyOf(lineStarts, entry * 2);
+                        valueStarts = Arrays.copyOf(valueStarts, entry * 2);
+                        lines = Arrays.copyOf(lines, entry * 2);
+                        lengths = Arrays.copyOf(lengths, entry * 2);
+                    }
+                }
+                lineStarts[entry] = start;
+                valueStarts[entry] = position;
+                lines[entry] = line;
+                lengths[entry] = years.length;
+                while (!atLineEnd()) {
+                    position++;
+                }
+            }
+            nextLine();
+        }
+        return new DataIndex(modified, buffer.limit(), years, names, lineStarts, valueStarts, lines, lengths);
+    }
+
+    //parses first count values of one indexed variable, errors are reported at the same line and column as by parseAll
+    void readValuesAt(DataIndex index, int entry, double[] values, int count) {
+        moveTo(index.getValueStart(entry), index.getLineStart(entry), index.getLine(entry));
+        readValues(values, count);
+    }
+
+    void moveTo(int position, int lineStart, int line) {
+        this.position = position;
+        this.lineStart = lineStart;
+        this.line = line;
+    }
+
+    //reads the next value of the current line into value[0], false at the end of the line
+    boolean readNextValue(double[] value) {
+        skipSpaces();
+        if (atLineEnd()) {
+            return false;
+        }
+        value[0] = readDouble();
+        return true;
+    }
+
+    private String[] readYears() {
+        String[] years = new String[8];
+        int count = 0;
+        skipSpaces();
+        while (!atLineEnd()) {
+            if (count == years.length) {
+                years = Arrays.copyOf(years, count * 2);
+            }
+            years[count++] = readToken();
+            skipSpaces();
+        }
+        return Arrays.copyOf(years, count);
+    }
+
+    //missing values repeat the last one read, or are zero when the line has no values at all
+    void readValues(double[] values, int LL) {
+        int read = 0;
+        skipSpaces();
+        while (read < LL && !atLineEnd()) {
+            values[read++] = readDouble();
+            skipSpaces();
+        }
+        for (int i = read; i < LL; i++) {
+            values[i] = i == 0 ? 0.0 : values[i - 1];
+        }
+
+        //values beyond LL are ignored, the same as years that were never declared
+        while (!atLineEnd()) {
+            position++;
+        }
+    }
+
+    private double readDouble() {
+        int start = position;
+        int index = position;
+        int limit = tokenEnd();
+
+        boolean negative = false;
+        if (index < limit && (byteAt(index) == '-' || byteAt(index) == '+')) {
+            negative = byteAt(index) == '-';
+            index++;
+        }
+
+        //collecting significand, digits which don't fit are counted only for the scale
+        long significand = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean exact = true;
+        while (index < limit && isDigit(byteAt(index))) {
+            if (significand < MAX_EXACT_SIGNIFICAND / 10) {
+                significand = significand * 10 + (byteAt(index) - '0');
+            }
+            else {
+                exact = false;
+                exponent++;
+            }
+            digits++;
+            index++;
+        }
+        if (index < limit && byteAt(index) == '.') {
+            index++;
+            while (index < limit && isDigit(byteAt(index))) {
+                if (significand < MAX_EXACT_SIGNIFICAND / 10) {
+                    significand = significand * 10 + (byteAt(index) - '0');
+                    exponent--;
+                }
+                else if (byteAt(index) != '0') {
+                    exact = false;
+                }
+                digits++;
+                index++;
+            }
+        }
+        if (digits > 0 && index < limit && (byteAt(index) == 'e' || byteAt(index) == 'E')) {
+            index++;
+            boolean negativeExponent = false;
+            if (index < limit && (byteAt(index) == '-' || byteAt(index) == '+')) {
+                negativeExponent = byteAt(index) == '-';
+                index++;
+            }
+            int exponentDigits = 0;
+            int explicitExponent = 0;
+            while (index < limit && isDigit(byteAt(index))) {
+                if (explicitExponent < 10_000) {
+                    explicitExponent = explicitExponent * 10 + (byteAt(index) - '0');
+                }
+                exponentDigits++;
+                index++;
+            }
+            if (exponentDigits == 0) {
+                exact = false;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        position = limit;
+
+        //exact when both significand and power of ten are exactly representable, the operation then rounds once
+        if (exact && digits > 0 && index == limit && exponent >= -22 && exponent <= 22) {
+            double value = (double) significand;
+            value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+
+        //anything else (long significands, NaN, hex floats, suffixes) is left to the JDK
+        String token = new String(bytes(start, limit), StandardCharsets.ISO_8859_1);
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            throw new DataParseException(source, line, start - lineStart + 1, "Invalid number: " + token, e);
+        }
+    }
+
+    private String readToken() {
+        int start = position;
+        int end = tokenEnd();
+        position = end;
+        return new String(bytes(start, end), StandardCharsets.UTF_8);
+    }
+
+    private int tokenEnd() {
+        int index = position;
+        int limit = buffer.limit();
+        while (index < limit && !isSpace(byteAt(index)) && !isLineBreak(byteAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private byte[] bytes(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return bytes;
+    }
+
+    private void skipSpaces() {
+        int limit = buffer.limit();
+        while (position < limit && isSpace(byteAt(position))) {
+            position++;
+        }
+    }
+
+    private boolean atLineEnd() {
+        return position >= buffer.limit() || isLineBreak(byteAt(position));
+    }
+
+    //consumes \n, \r or \r\n, the same line endings BufferedReader accepts
+    private void nextLine() {
+        if (position < buffer.limit()) {
+            byte lineBreak = byteAt(position++);
+            if (lineBreak == '\r' && position < buffer.limit() && byteAt(position) == '\n') {
+                position++;
+            }
+        }
+        line++;
+        lineStart = position;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    private byte byteAt(int index) {
+        return buffer.get(index);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    //whitespace as matched by \s, without line breaks
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == 0x0B || b == '\f';
+    }
+
+    private static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+}
@@ -0,0 +1,147 @@
+package Main;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+//offsets of every variable line of a text data file, so single series can be parsed without scanning the file
+//indexes are cached per path and reused as long as the modification time and size of the file stay the same
+final class DataIndex {
+
+    private static final int CAPACITY = Integer.getInteger("reflectivescripting.dataIndexCache.size", 64);
+
+    //access-ordered map, so the eldest entry is always the least recently used one
+    private static final Map<Path, DataIndex> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, DataIndex> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    //statistics
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private final FileTime modified;
+    private final long size;
+    private final String[] years;
+    private final List<String> names;
+    private final Map<String, Integer> entries;
+    //per variable, taken from the last line of that name: offset of the line, offset of its values, line number
+    //and number of values read, which is the number of years declared above that line
+    private final int[] lineStarts;
+    private final int[] valueStarts;
+    private final int[] lines;
+    private final int[] lengths;
+
+    DataIndex(FileTime modified, long size, String[] years, List<String> names,
+              int[] lineStarts, int[] valueStarts, int[] lines, int[] lengths) {
+        this.modified = modified;
+        this.size = size;
+        this.years = years;
+        this.names = List.copyOf(names);
+        this.entries = new HashMap<>(names.size() * 2);
+        for (int i = 0; i < names.size(); i++) {
+            entries.put(names.get(i), i);
+        }
+        this.lineStarts = Arrays.copyOf(lineStarts, names.size());
+        this.valueStarts = Arrays.copyOf(valueStarts, names.size());
+        this.lines = Arrays.copyOf(lines, names.size());
+        this.lengths = Arrays.copyOf(lengths, names.size());
+    }
+
+    //index of the mapped file, scanned only when there is no cached index for the same version of the file
+    static DataIndex of(Path path, MappedByteBuffer buffer) {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("File not found:\n" + path, e);
+        } catch (IOException e) {
+            throw new RuntimeException("Error occurred while reading from file", e);
+        }
+
+        synchronized (CACHE) {
+            DataIndex index = CACHE.get(key);
+            if (index != null && index.isCurrent(attributes, buffer)) {
+                HITS.incrementAndGet();
+                return index;
+            }
+        }
+        MISSES.incrementAndGet();
+
+        //scanning outside the lock, so different files don't wait for each other
+        DataIndex index = new DataFileParser(buffer, path.toString()).index(attributes.lastModifiedTime());
+        synchronized (CACHE) {
+            CACHE.put(key, index);
+        }
+        return index;
+    }
+
+    //mapping is compared too, a file rewritten within the resolution of its timestamp usually changes size
+    private boolean isCurrent(BasicFileAttributes attributes, MappedByteBuffer buffer) {
+        return modified.equals(attributes.lastModifiedTime())
+                && size == attributes.size()
+                && size == buffer.limit();
+    }
+
+    static long getHits() {
+        return HITS.get();
+    }
+
+    static long getMisses() {
+        return MISSES.get();
+    }
+
+    static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    String[] getYears() {
+        return years.clone();
+    }
+
+    int getLL() {
+        return years.length;
+    }
+
+    //names in the order of their first line, like the ones of an eagerly parsed file
+    List<String> getNames() {
+        return names;
+    }
+
+    //position of the variable in the index, -1 if the file has no such line
+    int find(String name) {
+        Integer entry = entries.get(name);
+        return entry == null ? -1 : entry;
+    }
+
+    int getLineStart(int entry) {
+        return lineStarts[entry];
+    }
+
+    int getValueStart(int entry) {
+        return valueStarts[entry];
+    }
+
+    int getLine(int entry) {
+        return lines[entry];
+    }
+
+    int getLength(int entry) {
+        return lengths[entry];
+    }
+}
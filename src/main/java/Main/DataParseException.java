@@ -0,0 +1,31 @@
+package Main;
+
+public class DataParseException extends RuntimeException {
+
+    private final String source;
+    private final int line;
+    private final int column;
+
+    public DataParseException(String source, int line, int column, String message) {
+        this(source, line, column, message, null);
+    }
+
+    public DataParseException(String source, int line, int column, String message, Throwable cause) {
+        super(message + " (" + source + ", line " + line + ", column " + column + ")", cause);
+        this.source = source;
+        this.line = line;
+        this.column = column;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+}
@@ -0,0 +1,70 @@
+package Main;
+
+//appends doubles exactly as Double.toString would, without creating a String for common values
+final class DoubleFormatter {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+            1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17
+    };
+    private static final long[] LONG_POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L,
+            100_000_000_000_000L, 1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L
+    };
+
+    //decimals up to 15 significant digits are the only candidates, so the match found is always the shortest one
+    private static final long MAX_SIGNIFICAND = 999_999_999_999_999L;
+
+    private DoubleFormatter() {
+    }
+
+    static void append(StringBuilder out, double value) {
+        //Double.toString switches to scientific notation outside of [1e-3, 1e7)
+        double abs = Math.abs(value);
+        if (!(abs >= 1e-3 && abs < 1e7)) {
+            if (value == 0.0) {
+                out.append(Double.doubleToRawLongBits(value) < 0 ? "-0.0" : "0.0");
+            }
+            else {
+                out.append(value);
+            }
+            return;
+        }
+
+        //looking for the smallest count of fraction digits which reads back as the same double
+        for (int fractionDigits = 0; fractionDigits < POWERS_OF_TEN.length; fractionDigits++) {
+            double scaled = abs * POWERS_OF_TEN[fractionDigits];
+            if (scaled > MAX_SIGNIFICAND) {
+                break;
+            }
+            long significand = (long) Math.rint(scaled);
+            if (significand / POWERS_OF_TEN[fractionDigits] == abs) {
+                if (value < 0) {
+                    out.append('-');
+                }
+                appendDecimal(out, significand, fractionDigits);
+                return;
+            }
+        }
+
+        //too many significant digits for the fast path
+        out.append(value);
+    }
+
+    private static void appendDecimal(StringBuilder out, long significand, int fractionDigits) {
+        long divisor = LONG_POWERS_OF_TEN[fractionDigits];
+        out.append(significand / divisor).append('.');
+        if (fractionDigits == 0) {
+            out.append('0');
+            return;
+        }
+
+        //fraction is written with leading zeros, trailing ones are never there as the shortest form was found
+        long fraction = significand % divisor;
+        for (long digit = divisor / 10; digit > 0; digit /= 10) {
+            out.append((char) ('0' + fraction / digit));
+            fraction %= digit;
+        }
+    }
+}
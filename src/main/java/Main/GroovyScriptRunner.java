@@ -0,0 +1,36 @@
+package Main;
+
+import javax.script.Bindings;
+import javax.script.ScriptException;
+import java.util.List;
+import java.util.Set;
+
+//default runner, scripts are compiled once into the shared cache and evaluated by the one shared engine,
+//which is thread safe, so its warm pool is that engine with its compiled scripts
+//controllers run groovy through their own cache and sandbox and may take the vectorized fast path,
+//this runner is used by everything else which needs groovy
+public final class GroovyScriptRunner extends AbstractScriptRunner {
+
+    static final String LANGUAGE = "groovy";
+
+    private static final Set<String> KEYWORDS = Set.of(
+            "def", "new", "for", "if", "else", "while", "package", "class",
+            "return", "double", "int", "float", "boolean", "char", "long",
+            "short", "void", "true", "false", "null", "this", "super",
+            "as", "in", "switch", "case", "break", "continue"
+    );
+
+    public GroovyScriptRunner() {
+        super(LANGUAGE, List.of("groovy", "gvy", "gy", "gsh"), KEYWORDS);
+    }
+
+    @Override
+    public void run(String script, Bindings bindings) throws ScriptException {
+        ScriptCache.getShared().compile(script).eval(bindings);
+    }
+
+    @Override
+    public void warmUp() {
+        ScriptCache.getShared().compile("LL = 0");
+    }
+}
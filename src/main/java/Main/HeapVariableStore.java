@@ -0,0 +1,52 @@
+package Main;
+
+import java.util.Arrays;
+
+final class HeapVariableStore extends AbstractVariableStore {
+
+    private double[][] blocks = new double[16][];
+
+    @Override
+    public int length(int id) {
+        checkId(id);
+        return blocks[id].length;
+    }
+
+    @Override
+    public double get(int id, int index) {
+        return blocks[id][index];
+    }
+
+    @Override
+    public void set(int id, int index, double value) {
+        blocks[id][index] = value;
+    }
+
+    @Override
+    public void copyTo(int id, double[] target) {
+        checkId(id);
+        System.arraycopy(blocks[id], 0, target, 0, blocks[id].length);
+    }
+
+    @Override
+    protected void write(int id, double[] values, int length) {
+        if (id >= blocks.length) {
+            blocks = Arrays.copyOf(blocks, Math.max(id + 1, blocks.length * 2));
+        }
+        //block is reused when the length stays the same
+        if (blocks[id] == null || blocks[id].length != length) {
+            blocks[id] = new double[length];
+        }
+        System.arraycopy(values, 0, blocks[id], 0, length);
+    }
+
+    @Override
+    protected void release(int id) {
+        blocks[id] = null;
+    }
+
+    @Override
+    protected void releaseAll() {
+        Arrays.fill(blocks, null);
+    }
+}
@@ -0,0 +1,180 @@
+package Main;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//keeps a latency histogram of every phase in memory, meant to be dumped after a batch
+//buckets are log-linear (4 per power of two), so percentiles are within 25% of the measured time
+public final class HistogramReporter implements ControllerListener {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final Map<ControllerPhase, PhaseHistogram> histograms = new EnumMap<>(ControllerPhase.class);
+
+    public HistogramReporter() {
+        for (ControllerPhase phase : ControllerPhase.values()) {
+            histograms.put(phase, new PhaseHistogram());
+        }
+    }
+
+    @Override
+    public void phaseCompleted(PhaseMetrics metrics) {
+        histograms.get(metrics.phase()).record(metrics);
+    }
+
+    public long getCount(ControllerPhase phase) {
+        return histograms.get(phase).count.sum();
+    }
+
+    public long getFailures(ControllerPhase phase) {
+        return histograms.get(phase).failures.sum();
+    }
+
+    //upper bound of the bucket holding the given quantile, 0 when nothing was recorded
+    public long getPercentileNanos(ControllerPhase phase, double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+        }
+        return histograms.get(phase).percentile(quantile);
+    }
+
+    public long getMaxNanos(ControllerPhase phase) {
+        return histograms.get(phase).maxNanos.get();
+    }
+
+    public double getMeanNanos(ControllerPhase phase) {
+        PhaseHistogram histogram = histograms.get(phase);
+        long count = histogram.count.sum();
+        return count == 0 ? 0 : (double) histogram.totalNanos.sum() / count;
+    }
+
+    //-1 when allocations weren't measured (virtual threads, JVMs without allocation counters)
+    public double getMeanAllocatedBytes(ControllerPhase phase) {
+        PhaseHistogram histogram = histograms.get(phase);
+        long measured = histogram.allocationSamples.sum();
+        return measured == 0 ? -1 : (double) histogram.totalAllocated.sum() / measured;
+    }
+
+    public void reset() {
+        for (ControllerPhase phase : ControllerPhase.values()) {
+            histograms.put(phase, new PhaseHistogram());
+        }
+    }
+
+    public void writeTo(Appendable sink) {
+        try {
+            sink.append(String.format(Locale.ROOT, "%-15s %8s %6s %11s %11s %11s %11s %11s %12s %12s%n",
+                    "phase", "count", "failed", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms",
+                    "mean alloc", "elements"));
+            for (ControllerPhase phase : ControllerPhase.values()) {
+                PhaseHistogram histogram = histograms.get(phase);
+                long count = histogram.count.sum();
+                if (count == 0) {
+                    continue;
+                }
+                double meanAllocated = getMeanAllocatedBytes(phase);
+                sink.append(String.format(Locale.ROOT, "%-15s %8d %6d %11.3f %11.3f %11.3f %11.3f %11.3f %12s %12d%n",
+                        phase, count, histogram.failures.sum(),
+                        getMeanNanos(phase) / 1e6,
+                        histogram.percentile(0.5) / 1e6,
+                        histogram.percentile(0.9) / 1e6,
+                        histogram.percentile(0.99) / 1e6,
+                        histogram.maxNanos.get() / 1e6,
+                        meanAllocated < 0 ? "-" : formatBytes(meanAllocated),
+                        histogram.totalElements.sum()));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error occurred while writing report", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        writeTo(report);
+        return report.toString();
+    }
+
+    private static String formatBytes(double bytes) {
+        if (bytes >= 1 << 20) {
+            return String.format(Locale.ROOT, "%.1f MB", bytes / (1 << 20));
+        }
+        if (bytes >= 1 << 10) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / (1 << 10));
+        }
+        return String.format(Locale.ROOT, "%.0f B", bytes);
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    private static final class PhaseHistogram {
+
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        final LongAdder count = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        final LongAdder totalAllocated = new LongAdder();
+        final LongAdder allocationSamples = new LongAdder();
+        final LongAdder totalElements = new LongAdder();
+
+        void record(PhaseMetrics metrics) {
+            long nanos = metrics.wallNanos();
+            buckets.incrementAndGet(bucketOf(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (!metrics.isSuccessful()) {
+                failures.increment();
+            }
+            if (metrics.allocatedBytes() >= 0) {
+                totalAllocated.add(metrics.allocatedBytes());
+                allocationSamples.increment();
+            }
+            totalElements.add(metrics.elements());
+        }
+
+        long percentile(double quantile) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += buckets.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    //bucket bound can't be above the largest recorded time
+                    return Math.min(upperBoundOf(i), maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+//state of the previous run of one controller, used to skip work whose inputs didn't change
+//a run starts with reading data; every variable which differs from its value at the same point of the previous run
+//is tracked as changed, the model and every script are skipped when nothing they read has changed
+//a model with @DependsOn is skipped when no input of a declared field has changed, its other fields are inputs
+//which keep the values just read; a run which changes one of them fails, as a skipped run would leave it stale
+//models and scripts are expected to be deterministic, skipped scripts don't print or write anything
+final class IncrementalRuns {
+
+    private final ModelBinding binding;
+    private final ModelBinder binder;
+    private final Function<String, Object> reader;
+
+    private String[] years;
+    //model fields right after reading data and right after running the model, null before the first run
+    private VariableStore inputs;
+    private VariableStore modelState;
+    private final Set<String> changed = new HashSet<>();
+    //a model run twice on the same data may compute something else the second time
+    private boolean modelRunInCurrentRun = false;
+    private List<ScriptRecord> previousScripts = List.of();
+    private List<ScriptRecord> currentScripts = new ArrayList<>();
+
+    //statistics
+    private long skippedModelRuns = 0;
+    private long skippedScripts = 0;
+
+    IncrementalRuns(ModelBinding binding, Function<String, Object> reader) {
+        //@DependsOn is checked only here, models which aren't run incrementally don't rely on it
+        for (Map.Entry<String, Set<String>> declared : binding.getDependencies().entrySet()) {
+            if (binding.getField(declared.getKey()) == null) {
+                throw new RuntimeException("@DependsOn is allowed only on binded fields: " + declared.getKey());
+            }
+            for (String input : declared.getValue()) {
+                if (binding.getField(input) == null) {
+                    throw new RuntimeException("Unknown variable " + input + " in @DependsOn of field " + declared.getKey());
+                }
+            }
+        }
+        this.binding = binding;
+        this.binder = binding.getBinder();
+        this.reader = reader;
+    }
+
+    void dataRead(Object model, String[] newYears) {
+        VariableStore newInputs = VariableStore.onHeap();
+        binder.readInto(model, newInputs);
+
+        changed.clear();
+        if (inputs == null || !Arrays.equals(years, newYears)) {
+            //different years make the previous run useless
+            modelState = null;
+            previousScripts = List.of();
+            changed.addAll(newInputs.names());
+        }
+        else {
+            changed.addAll(differences(inputs, newInputs));
+            previousScripts = currentScripts;
+        }
+        currentScripts = new ArrayList<>();
+        modelRunInCurrentRun = false;
+        years = newYears.clone();
+        inputs = newInputs;
+    }
+
+    //restores results of the previous model run when none of the inputs of the model has changed
+    boolean skipModel(Object model) {
+        if (modelState == null || modelRunInCurrentRun) {
+            return false;
+        }
+        Collection<String> restored;
+        if (binding.hasDependencies()) {
+            for (Set<String> dependencies : binding.getDependencies().values()) {
+                if (!Collections.disjoint(dependencies, changed)) {
+                    return false;
+                }
+            }
+            //fields without @DependsOn are inputs which keep the values just read, so a change to an input
+            //no declared field depends on doesn't need a run
+            restored = binding.getDependencies().keySet();
+        }
+        else {
+            if (!changed.isEmpty()) {
+                return false;
+            }
+            restored = modelState.names();
+        }
+
+        for (String name : restored) {
+            ModelBinding.BoundField field = binding.getField(name);
+            field.set(model, modelState.toArray(name));
+        }
+        changed.removeAll(restored);
+        binder.readInto(model, modelState);
+        modelRunInCurrentRun = true;
+        skippedModelRuns++;
+        return true;
+    }
+
+    void modelRun(Object model) {
+        VariableStore newState = VariableStore.onHeap();
+        binder.readInto(model, newState);
+        if (binding.hasDependencies() && inputs != null) {
+            for (ModelBinding.BoundField field : binding.getFields()) {
+                if (!field.isLL() && !binding.getDependencies().containsKey(field.name())
+                        && !Arrays.equals(inputs.toArray(field.name()), newState.toArray(field.name()))) {
+                    //nothing of this run can be relied on by a skipped one
+                    modelState = null;
+                    throw new RuntimeException("Field " + field.name() + " of model " + binding.getModelClass().getName()
+                            + " was computed by run() but has no @DependsOn, declare the fields it is computed from");
+                }
+            }
+        }
+        if (modelState != null) {
+            for (ModelBinding.BoundField field : binding.getFields()) {
+                changed.remove(field.name());
+            }
+            changed.addAll(differences(modelState, newState));
+        }
+        else {
+            changed.addAll(newState.names());
+        }
+        modelState = newState;
+        modelRunInCurrentRun = true;
+    }
+
+    //copies of the outputs the same script assigned in the previous run, null when it has to run
+    Map<String, Object> reusableOutputs(String script, ScriptRunner runner) {
+        int position = currentScripts.size();
+        if (position >= previousScripts.size()) {
+            return null;
+        }
+        ScriptRecord previous = previousScripts.get(position);
+        if (!previous.script().equals(script) || previous.runner() != runner
+                || !Collections.disjoint(runner.retrieveVariables(script), changed)) {
+            return null;
+        }
+
+        Map<String, Object> outputs = new LinkedHashMap<>();
+        for (Map.Entry<String, double[]> output : previous.outputs().entrySet()) {
+            outputs.put(output.getKey(), output.getValue().clone());
+        }
+        currentScripts.add(previous);
+        skippedScripts++;
+        return outputs;
+    }
+
+    void scriptRun(String script, ScriptRunner runner) {
+        Map<String, double[]> outputs = new LinkedHashMap<>();
+        for (String variable : runner.retrieveAssignedVariables(script)) {
+            if (reader.apply(variable) instanceof double[] values) {
+                outputs.put(variable, values.clone());
+            }
+        }
+
+        //outputs are compared with the ones of the same script in the previous run
+        int position = currentScripts.size();
+        ScriptRecord previous = position < previousScripts.size() ? previousScripts.get(position) : null;
+        for (Map.Entry<String, double[]> output : outputs.entrySet()) {
+            double[] previousValues = previous != null && previous.script().equals(script) && previous.runner() == runner
+                    ? previous.outputs().get(output.getKey())
+                    : null;
+            if (Arrays.equals(output.getValue(), previousValues)) {
+                changed.remove(output.getKey());
+            }
+            else {
+                changed.add(output.getKey());
+            }
+        }
+        currentScripts.add(new ScriptRecord(script, runner, outputs));
+    }
+
+    long getSkippedModelRuns() {
+        return skippedModelRuns;
+    }
+
+    long getSkippedScripts() {
+        return skippedScripts;
+    }
+
+    private static Set<String> differences(VariableStore previous, VariableStore current) {
+        Set<String> different = new HashSet<>();
+        for (String name : current.names()) {
+            if (!Arrays.equals(previous.toArray(name), current.toArray(name))) {
+                different.add(name);
+            }
+        }
+        for (String name : previous.names()) {
+            if (!current.contains(name)) {
+                different.add(name);
+            }
+        }
+        return different;
+    }
+
+    private record ScriptRecord(String script, ScriptRunner runner, Map<String, double[]> outputs) {
+    }
+}
@@ -0,0 +1,21 @@
+package Main;
+
+//emits every phase as a reflectivescripting.ControllerPhase event, recorded only while JFR records it
+public final class JfrControllerListener implements ControllerListener {
+
+    @Override
+    public void phaseCompleted(PhaseMetrics metrics) {
+        ControllerPhaseEvent event = new ControllerPhaseEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.model = metrics.model();
+        event.phase = metrics.phase().name();
+        event.wallTime = metrics.wallNanos();
+        event.allocated = metrics.allocatedBytes();
+        event.variables = metrics.variables();
+        event.elements = metrics.elements();
+        event.successful = metrics.isSuccessful();
+        event.commit();
+    }
+}
@@ -0,0 +1,72 @@
+package Main;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+//one headless run: model over a data file, then scripts, results written as TSV or in the binary format
+//shared by the command line and the server, models come from the shared pools so repeated jobs stay warm
+record Job(String model, String dataFile, List<ScriptSource> scripts, boolean binary,
+           boolean lazy, boolean vectorized, String firstYear, String lastYear, boolean cached) {
+
+    Job {
+        if (model == null || model.isBlank()) {
+            throw new IllegalArgumentException("Model is required");
+        }
+        if (dataFile == null || dataFile.isBlank()) {
+            throw new IllegalArgumentException("Data file is required");
+        }
+        scripts = List.copyOf(scripts);
+    }
+
+    //scripts are given as file names, each one is run by the runner of its extension
+    static List<ScriptSource> readScripts(List<String> fnames) {
+        List<ScriptSource> scripts = new ArrayList<>(fnames.size());
+        for (String fname : fnames) {
+            scripts.add(ScriptSource.fromFile(fname));
+        }
+        return scripts;
+    }
+
+    //sandbox is null for trusted scripts, like the ones given on the command line
+    void run(OutputStream output, List<ControllerListener> listeners, ScriptSandbox sandbox) {
+        try (Controller controller = Controller.fromPool(model)) {
+            controller.useSandbox(sandbox);
+            for (ControllerListener listener : listeners) {
+                controller.addListener(listener);
+            }
+            controller.useVectorizedScripts(vectorized).useYearWindow(firstYear, lastYear);
+            if (cached) {
+                controller.useResultCache(ResultCache.getShared());
+            }
+            if (lazy) {
+                controller.readDataLazilyFrom(dataFile);
+            }
+            else {
+                controller.readDataFrom(dataFile);
+            }
+            controller.runModel();
+            for (ScriptSource script : scripts) {
+                controller.runScript(script.text(), script.runner());
+            }
+
+            if (binary) {
+                controller.writeBinaryResultsTo(output);
+            }
+            else {
+                controller.writeResultsTo(output);
+            }
+        }
+    }
+
+    //message with all its causes, one per line
+    static String describe(Throwable error) {
+        StringBuilder message = new StringBuilder(String.valueOf(error.getMessage()));
+        for (Throwable cause = error.getCause(); cause != null && cause != cause.getCause(); cause = cause.getCause()) {
+            if (cause.getMessage() != null) {
+                message.append('\n').append(cause.getMessage());
+            }
+        }
+        return message.toString();
+    }
+}
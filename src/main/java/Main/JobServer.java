@@ -0,0 +1,338 @@
+package Main;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.script.Compilable;
+import javax.script.ScriptException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//long-running server on the loopback interface, jobs run concurrently on virtual threads in one warm JVM:
+//the script engine, compiled scripts, model bindings, model pools and data indexes are shared by all jobs
+//POST /jobs?model=..&data=..[&script=file]..[&format=tsv|binary][&lazy=true][&vectorized=true][&from=year][&to=year]
+//[&cache=true][&language=groovy] runs a job, a non-empty request body is run as one more script in that language;
+//GET /stats reports startup time and latencies
+//scripts of jobs run in the shared ScriptSandbox, a job stopped by its limits gets 422, as does a job with scripts
+//of a language the sandbox can't limit
+//loopback alone doesn't keep web pages out, a browser can post to it or reach it through DNS rebinding, so every
+//request needs the token of the server in the X-Job-Token header (401 without it), a loopback Host and no foreign
+//Origin (403), and jobs need a content type which a cross-site form can't send (415)
+public final class JobServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final HistogramReporter phases = new HistogramReporter();
+    private final ScriptSandbox sandbox = ScriptSandbox.getShared();
+    private final byte[] token;
+    private final long startupNanos;
+    private final long jvmUptimeMillis;
+
+    //statistics of whole jobs, buckets are the ones of HistogramReporter
+    private final AtomicLong jobIds = new AtomicLong();
+    private final AtomicLongArray jobBuckets = new AtomicLongArray(HistogramReporter.BUCKETS);
+    private final LongAdder jobs = new LongAdder();
+    private final LongAdder failedJobs = new LongAdder();
+    private final LongAdder jobNanos = new LongAdder();
+    private final LongAccumulator maxJobNanos = new LongAccumulator(Math::max, 0);
+
+    //content types a browser sends cross-site without a preflight request
+    private static final Set<String> SIMPLE_CONTENT_TYPES = Set.of(
+            "text/plain", "application/x-www-form-urlencoded", "multipart/form-data");
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("127.0.0.1", "localhost", "[::1]");
+
+    private JobServer(int port, String token) throws IOException {
+        long start = System.nanoTime();
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+
+        //script engines and their compilers are loaded before the first job, so no job pays for them
+        try {
+            ((Compilable) sandbox.getCache().getEngine()).compile("LL = 0");
+        } catch (ScriptException e) {
+            throw new RuntimeException("Error while warming up the script engine", e);
+        }
+        ScriptRunners.warmUpAll();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/jobs", this::handleJob);
+        server.createContext("/stats", this::handleStats);
+        server.start();
+        startupNanos = System.nanoTime() - start;
+        jvmUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    //port 0 picks a free port, see getPort(); the token is random unless -Dreflectivescripting.server.token is set
+    public static JobServer start(int port) {
+        String token = System.getProperty("reflectivescripting.server.token");
+        if (token == null || token.isBlank()) {
+            byte[] bytes = new byte[32];
+            new SecureRandom().nextBytes(bytes);
+            token = HexFormat.of().formatHex(bytes);
+        }
+        return start(port, token);
+    }
+
+    public static JobServer start(int port, String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("Server token is required");
+        }
+        try {
+            return new JobServer(port, token);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while starting server on port " + port, e);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    //value clients send in the X-Job-Token header
+    public String getToken() {
+        return new String(token, StandardCharsets.UTF_8);
+    }
+
+    //time from start() until the server accepted connections, the engine warm-up included
+    public long getStartupNanos() {
+        return startupNanos;
+    }
+
+    //time from the start of the JVM until the server accepted connections
+    public long getJvmUptimeMillis() {
+        return jvmUptimeMillis;
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        stopped.await();
+    }
+
+    @Override
+    public void close() {
+        if (stopped.getCount() == 0) {
+            return;
+        }
+        server.stop(1);
+        executor.shutdown();
+        stopped.countDown();
+    }
+
+    private void handleJob(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!authorize(exchange)) {
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("POST")) {
+                send(exchange, 405, "Jobs are submitted with POST");
+                return;
+            }
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType == null || SIMPLE_CONTENT_TYPES.contains(mediaType(contentType))) {
+                send(exchange, 415, "Jobs need a content type like text/x-groovy or application/octet-stream");
+                return;
+            }
+            long id = jobIds.incrementAndGet();
+
+            Job job;
+            try {
+                Map<String, List<String>> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+                String format = first(parameters, "format", "tsv");
+                if (!format.equals("tsv") && !format.equals("binary")) {
+                    throw new IllegalArgumentException("Unknown format: " + format);
+                }
+                List<ScriptSource> scripts = Job.readScripts(parameters.getOrDefault("script", List.of()));
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                if (!body.isBlank()) {
+                    scripts.add(ScriptSource.of(body, first(parameters, "language", ScriptRunners.getDefault().getLanguage())));
+                }
+                job = new Job(first(parameters, "model", null), first(parameters, "data", null), scripts,
+                        format.equals("binary"),
+                        Boolean.parseBoolean(first(parameters, "lazy", "false")),
+                        Boolean.parseBoolean(first(parameters, "vectorized", "false")),
+                        first(parameters, "from", null), first(parameters, "to", null),
+                        Boolean.parseBoolean(first(parameters, "cache", "false")));
+            } catch (RuntimeException e) {
+                send(exchange, 400, Job.describe(e));
+                return;
+            }
+
+            //results are buffered, so a failing job still gets a proper error status
+            long start = System.nanoTime();
+            ByteArrayOutputStream results = new ByteArrayOutputStream();
+            try {
+                job.run(results, List.of(phases), sandbox);
+            } catch (ScriptLimitException e) {
+                long elapsed = recordJob(System.nanoTime() - start, false);
+                log(id, job, elapsed, "stopped, " + e.getLimit());
+                send(exchange, 422, Job.describe(e));
+                return;
+            } catch (RuntimeException e) {
+                long elapsed = recordJob(System.nanoTime() - start, false);
+                log(id, job, elapsed, "failed");
+                send(exchange, 500, Job.describe(e));
+                return;
+            }
+            long elapsed = recordJob(System.nanoTime() - start, true);
+            log(id, job, elapsed, "ok");
+
+            exchange.getResponseHeaders().set("Content-Type", job.binary() ? "application/octet-stream" : "text/tab-separated-values; charset=utf-8");
+            exchange.getResponseHeaders().set("X-Job-Millis", String.format(Locale.ROOT, "%.3f", elapsed / 1e6));
+            exchange.sendResponseHeaders(200, results.size());
+            try (OutputStream body = exchange.getResponseBody()) {
+                results.writeTo(body);
+            }
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!authorize(exchange)) {
+                return;
+            }
+            send(exchange, 200, getStats());
+        }
+    }
+
+    //sends the error response itself when the request is refused
+    private boolean authorize(HttpExchange exchange) throws IOException {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !isLoopback(host, "")) {
+            send(exchange, 403, "Host must be the loopback address");
+            return false;
+        }
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin != null && !isLoopback(origin, "http://")) {
+            send(exchange, 403, "Requests from other origins are refused");
+            return false;
+        }
+        String given = exchange.getRequestHeaders().getFirst("X-Job-Token");
+        //compared in constant time, so the token can't be guessed byte by byte
+        if (given == null || !MessageDigest.isEqual(token, given.getBytes(StandardCharsets.UTF_8))) {
+            send(exchange, 401, "X-Job-Token header is missing or wrong");
+            return false;
+        }
+        return true;
+    }
+
+    //loopback name with the port of this server, like 127.0.0.1:8080 or http://localhost:8080
+    private boolean isLoopback(String address, String scheme) {
+        String lowerCase = address.toLowerCase(Locale.ROOT);
+        for (String host : LOOPBACK_HOSTS) {
+            if (lowerCase.equals(scheme + host + ":" + getPort())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String mediaType(String contentType) {
+        int parameters = contentType.indexOf(';');
+        return (parameters < 0 ? contentType : contentType.substring(0, parameters)).trim().toLowerCase(Locale.ROOT);
+    }
+
+    public String getStats() {
+        long count = jobs.sum();
+        StringBuilder stats = new StringBuilder();
+        stats.append(String.format(Locale.ROOT, "startup %.3f ms, jvm uptime at startup %d ms%n",
+                startupNanos / 1e6, jvmUptimeMillis));
+        stats.append(String.format(Locale.ROOT, "jobs %d, failed %d, mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                count, failedJobs.sum(),
+                count == 0 ? 0 : jobNanos.sum() / 1e6 / count,
+                jobPercentile(0.5) / 1e6, jobPercentile(0.99) / 1e6, maxJobNanos.get() / 1e6));
+        ScriptCache cache = sandbox.getCache();
+        stats.append(String.format(Locale.ROOT, "script cache: hits %d, misses %d%n", cache.getHits(), cache.getMisses()));
+        stats.append(String.format(Locale.ROOT, "sandbox: scripts %d, timeouts %d, array limits %d, rejected %d, stuck %d%n",
+                sandbox.getExecuted(), sandbox.getTimeouts(), sandbox.getArrayViolations(), sandbox.getRejected(),
+                sandbox.getStuck()));
+        ResultCache resultCache = ResultCache.getSharedIfOpen();
+        if (resultCache != null) {
+            stats.append(String.format(Locale.ROOT, "result cache: hits %d, misses %d, stores %d, evictions %d, %d files, %d bytes%n",
+                    resultCache.getHits(), resultCache.getMisses(), resultCache.getStores(), resultCache.getEvictions(),
+                    resultCache.size(), resultCache.getBytes()));
+        }
+        phases.writeTo(stats);
+        return stats.toString();
+    }
+
+    private long recordJob(long nanos, boolean successful) {
+        jobBuckets.incrementAndGet(HistogramReporter.bucketOf(nanos));
+        jobs.increment();
+        jobNanos.add(nanos);
+        maxJobNanos.accumulate(nanos);
+        if (!successful) {
+            failedJobs.increment();
+        }
+        return nanos;
+    }
+
+    private long jobPercentile(double quantile) {
+        long total = jobs.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < jobBuckets.length(); i++) {
+            seen += jobBuckets.get(i);
+            if (seen >= rank) {
+                return Math.min(HistogramReporter.upperBoundOf(i), maxJobNanos.get());
+            }
+        }
+        return maxJobNanos.get();
+    }
+
+    private static void log(long id, Job job, long nanos, String outcome) {
+        System.err.printf(Locale.ROOT, "job #%d %s %s %.3f ms %s%n", id, job.model(), job.dataFile(), nanos / 1e6, outcome);
+    }
+
+    private static void send(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    private static Map<String, List<String>> parseQuery(String query) {
+        Map<String, List<String>> parameters = new LinkedHashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), StandardCharsets.UTF_8);
+            String value = separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            parameters.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+        }
+        return parameters;
+    }
+
+    private static String first(Map<String, List<String>> parameters, String name, String defaultValue) {
+        List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+}
@@ -0,0 +1,180 @@
+package Main;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//runner for any other JSR-223 engine on the class path, like a python or javascript one
+//engines declaring themselves thread safe are shared, the others are kept in a pool of up to one engine per core:
+//a script takes an idle engine, creates one while the pool isn't full, or waits for one
+//every engine keeps its own compiled scripts when it supports compilation
+public final class Jsr223ScriptRunner extends AbstractScriptRunner {
+
+    private static final int COMPILED_PER_ENGINE = 64;
+    private static final Map<String, Set<String>> KEYWORDS = Map.of(
+            "python", Set.of("and", "as", "assert", "break", "class", "continue", "def", "del", "elif", "else",
+                    "except", "False", "finally", "for", "from", "global", "if", "import", "in", "is", "lambda",
+                    "None", "nonlocal", "not", "or", "pass", "raise", "return", "True", "try", "while", "with",
+                    "yield", "range", "len"),
+            "javascript", Set.of("var", "let", "const", "new", "for", "if", "else", "while", "do", "function",
+                    "return", "true", "false", "null", "undefined", "this", "in", "of", "switch", "case",
+                    "break", "continue", "typeof", "instanceof", "Math", "Array", "Float64Array")
+    );
+
+    private final ScriptEngineFactory factory;
+    private final boolean threadSafe;
+    private final int poolSize;
+    private final BlockingQueue<PooledEngine> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    private volatile PooledEngine shared;
+
+    public Jsr223ScriptRunner(ScriptEngineFactory factory) {
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+
+    public Jsr223ScriptRunner(ScriptEngineFactory factory, int poolSize) {
+        super(languageOf(factory), factory.getExtensions(), KEYWORDS.getOrDefault(languageOf(factory), Set.of()));
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Engine pool size must be positive: " + poolSize);
+        }
+        this.factory = factory;
+        Object threading = factory.getParameter("THREADING");
+        this.threadSafe = "MULTITHREADED".equals(threading)
+                || "THREAD-ISOLATED".equals(threading)
+                || "STATELESS".equals(threading);
+        this.poolSize = threadSafe ? 1 : poolSize;
+        this.idle = new ArrayBlockingQueue<>(this.poolSize);
+    }
+
+    static String languageOf(ScriptEngineFactory factory) {
+        String language = factory.getLanguageName().toLowerCase(Locale.ROOT);
+        return language.equals("ecmascript") || language.equals("js") ? "javascript" : language;
+    }
+
+    @Override
+    public void run(String script, Bindings bindings) throws ScriptException {
+        if (threadSafe) {
+            getShared().eval(script, bindings);
+            return;
+        }
+        PooledEngine engine = borrow();
+        try {
+            engine.eval(script, bindings);
+        } finally {
+            idle.offer(engine);
+        }
+    }
+
+    //engines are created when the runner is first used, or all at once here
+    @Override
+    public void warmUp() {
+        if (threadSafe) {
+            getShared();
+            return;
+        }
+        int count;
+        while ((count = created.get()) < poolSize) {
+            if (created.compareAndSet(count, count + 1)) {
+                idle.offer(createEngine());
+            }
+        }
+    }
+
+    private PooledEngine getShared() {
+        PooledEngine engine = shared;
+        if (engine == null) {
+            synchronized (this) {
+                engine = shared;
+                if (engine == null) {
+                    engine = createEngine();
+                    created.set(1);
+                    shared = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    private PooledEngine borrow() {
+        PooledEngine engine = idle.poll();
+        if (engine != null) {
+            return engine;
+        }
+        int count;
+        while ((count = created.get()) < poolSize) {
+            if (created.compareAndSet(count, count + 1)) {
+                return createEngine();
+            }
+        }
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a " + getLanguage() + " engine", e);
+        }
+    }
+
+    private PooledEngine createEngine() {
+        ScriptEngine engine = factory.getScriptEngine();
+        if (engine == null) {
+            throw new RuntimeException("Script engine not found: " + factory.getEngineName());
+        }
+        return new PooledEngine(engine);
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getCreated() {
+        return created.get();
+    }
+
+    //engine with its compiled scripts, used by one thread at a time unless the engine is thread safe
+    private static final class PooledEngine {
+
+        private final ScriptEngine engine;
+        private final Map<String, CompiledScript> compiled;
+
+        PooledEngine(ScriptEngine engine) {
+            this.engine = engine;
+            this.compiled = engine instanceof Compilable
+                    ? new LinkedHashMap<>(16, 0.75f, true) {
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+                            return size() > COMPILED_PER_ENGINE;
+                        }
+                    }
+                    : null;
+        }
+
+        void eval(String script, Bindings bindings) throws ScriptException {
+            if (compiled == null) {
+                engine.eval(script, bindings);
+                return;
+            }
+            CompiledScript compiledScript;
+            synchronized (compiled) {
+                compiledScript = compiled.get(script);
+            }
+            if (compiledScript == null) {
+                compiledScript = ((Compilable) engine).compile(script);
+                synchronized (compiled) {
+                    compiled.put(script, compiledScript);
+                }
+            }
+            compiledScript.eval(bindings);
+        }
+    }
+}
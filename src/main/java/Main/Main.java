@@ -4,6 +4,10 @@ import javax.swing.*;
 
 public class Main {
     public static void main(String[] args) {
+        //arguments select the headless command line, see CommandLine.USAGE
+        if (args.length > 0) {
+            System.exit(CommandLine.execute(args));
+        }
         SwingUtilities.invokeLater(Main::createWindow);
     }
 
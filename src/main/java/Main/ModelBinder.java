@@ -0,0 +1,18 @@
+package Main;
+
+//bulk access to the @Bind fields of one model class
+//implementations named <Model>_Binder are generated at compile time by Processors.BinderProcessor, they access
+//fields directly (or through constant VarHandles for private ones), so every call stays monomorphic;
+//classes without a generated binder get a reflective one
+public interface ModelBinder {
+
+    Class<?> getModelClass();
+
+    //sets LL and every array variable from the store, variables missing from the store get LL zeros
+    void writeFrom(Object model, VariableStore store, int LL);
+
+    //copies every array variable of the model into the store in declaration order, null ones are removed
+    void readInto(Object model, VariableStore store);
+
+    void run(Object model);
+}
@@ -0,0 +1,304 @@
+package Main;
+
+import Annotations.Bind;
+import Annotations.Chunkable;
+import Annotations.DependsOn;
+import Annotations.Reset;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//reflection over a model class is done only once, handles are reused by every controller of that class
+public final class ModelBinding {
+
+    //bindings are kept by the classes themselves, so they don't keep classes of a replaced loader from being unloaded
+    private static final ClassValue<ModelBinding> BINDINGS = new ClassValue<>() {
+        @Override
+        protected ModelBinding computeValue(Class<?> modelClass) {
+            return new ModelBinding(modelClass);
+        }
+    };
+
+    //model classes by name, so repeated runs don't go through Class.forName; these come only from the loader
+    //of this class, which is never replaced
+    private static final Map<String, Class<?>> CLASSES = new ConcurrentHashMap<>();
+
+    private final Class<?> modelClass;
+    private final List<BoundField> fields;
+    private final Map<String, BoundField> fieldsByName;
+    private final BoundField llField;
+    private final Map<String, Set<String>> dependencies;
+    private final int chunkLag;
+    private final MethodHandle runHandle;
+    private final MethodHandle resetHandle;
+    private final MethodHandle constructorHandle;
+    private volatile ModelBinder binder;
+
+    private ModelBinding(Class<?> modelClass) {
+        this.modelClass = modelClass;
+
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(modelClass, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Illegal access while inspecting the class: " + modelClass.getName(), e);
+        }
+
+        //collecting binded fields in declaration order
+        List<BoundField> boundFields = new ArrayList<>();
+        Map<String, BoundField> byName = new HashMap<>();
+        BoundField ll = null;
+        for (Field field : modelClass.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Bind.class)) {
+                BoundField boundField;
+                try {
+                    boundField = new BoundField(field.getName(), field.getType(),
+                            Modifier.isStatic(field.getModifiers()), lookup.unreflectVarHandle(field));
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException("Illegal access while reading field: " + field.getName(), e);
+                }
+                boundFields.add(boundField);
+                byName.put(boundField.name(), boundField);
+                if (boundField.isLL()) {
+                    ll = boundField;
+                }
+            }
+        }
+        this.fields = Collections.unmodifiableList(boundFields);
+        this.fieldsByName = byName;
+        this.llField = ll;
+
+        //declared inputs of computed fields as they are written, checked only by incremental runs which use them
+        Map<String, Set<String>> declared = new LinkedHashMap<>();
+        for (Field field : modelClass.getDeclaredFields()) {
+            DependsOn dependsOn = field.getAnnotation(DependsOn.class);
+            if (dependsOn != null) {
+                declared.put(field.getName(), Collections.unmodifiableSet(new LinkedHashSet<>(List.of(dependsOn.value()))));
+            }
+        }
+        this.dependencies = Collections.unmodifiableMap(declared);
+
+        Chunkable chunkable = modelClass.getAnnotation(Chunkable.class);
+        if (chunkable != null && chunkable.lag() < 0) {
+            throw new RuntimeException("Lag of a chunkable model can't be negative: " + modelClass.getName());
+        }
+        this.chunkLag = chunkable == null ? -1 : chunkable.lag();
+
+        //resolving run method, missing method is reported only when model is actually run
+        MethodHandle run;
+        try {
+            Method runMethod = modelClass.getMethod("run");
+            run = lookup.unreflect(runMethod).asType(MethodType.methodType(void.class, Object.class));
+        } catch (NoSuchMethodException e) {
+            run = null;
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Illegal access while resolving run method", e);
+        }
+        this.runHandle = run;
+
+        //optional hook for auxiliary fields of pooled models
+        MethodHandle reset = null;
+        for (Method method : modelClass.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(Reset.class)) {
+                if (method.getParameterCount() != 0 || Modifier.isStatic(method.getModifiers())) {
+                    throw new RuntimeException("Reset method must be an instance method without parameters: " + method.getName());
+                }
+                if (reset != null) {
+                    throw new RuntimeException("More than one reset method found in class: " + modelClass.getName());
+                }
+                try {
+                    reset = lookup.unreflect(method).asType(MethodType.methodType(void.class, Object.class));
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException("Illegal access while resolving reset method", e);
+                }
+            }
+        }
+        this.resetHandle = reset;
+
+        //resolving no-argument constructor, missing one is reported only when an instance is needed
+        MethodHandle constructor;
+        try {
+            constructor = lookup.findConstructor(modelClass, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            constructor = null;
+        }
+        this.constructorHandle = constructor;
+    }
+
+    public static ModelBinding of(Class<?> modelClass) {
+        return BINDINGS.get(modelClass);
+    }
+
+    public static Class<?> loadClass(String modelName) {
+        Class<?> modelClass = CLASSES.get(modelName);
+        if (modelClass == null) {
+            try {
+                modelClass = Class.forName(modelName);
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException("Class not found: " + modelName, e);
+            }
+            CLASSES.putIfAbsent(modelName, modelClass);
+        }
+        return modelClass;
+    }
+
+    //binder generated for the model class at compile time, or a reflective one when there is none
+    public ModelBinder getBinder() {
+        ModelBinder result = binder;
+        if (result == null) {
+            result = loadGeneratedBinder();
+            if (result == null) {
+                result = new ReflectiveModelBinder(this);
+            }
+            binder = result;
+        }
+        return result;
+    }
+
+    public boolean hasGeneratedBinder() {
+        return !(getBinder() instanceof ReflectiveModelBinder);
+    }
+
+    private ModelBinder loadGeneratedBinder() {
+        //binders are generated only for top level classes
+        if (modelClass.getEnclosingClass() != null) {
+            return null;
+        }
+        try {
+            Class<?> binderClass = Class.forName(modelClass.getName() + "_Binder", true, modelClass.getClassLoader());
+            if (!ModelBinder.class.isAssignableFrom(binderClass)) {
+                return null;
+            }
+            ModelBinder generated = (ModelBinder) binderClass.getDeclaredConstructor().newInstance();
+            return generated.getModelClass() == modelClass ? generated : null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    public Object newInstance() {
+        if (constructorHandle == null) {
+            throw new RuntimeException("No constructor found for class: " + modelClass.getName());
+        }
+        try {
+            return constructorHandle.invokeExact();
+        } catch (Throwable e) {
+            throw new RuntimeException("Something went wrong while initializing the class: " + modelClass.getName(), e);
+        }
+    }
+
+    public Class<?> getModelClass() {
+        return modelClass;
+    }
+
+    //all binded fields, including LL
+    public List<BoundField> getFields() {
+        return fields;
+    }
+
+    public BoundField getField(String name) {
+        return fieldsByName.get(name);
+    }
+
+    public BoundField getLLField() {
+        return llField;
+    }
+
+    //computed fields with the fields they depend on, empty when the model doesn't declare any
+    public Map<String, Set<String>> getDependencies() {
+        return dependencies;
+    }
+
+    public boolean hasDependencies() {
+        return !dependencies.isEmpty();
+    }
+
+    public boolean isChunkable() {
+        return chunkLag >= 0;
+    }
+
+    //number of preceding years run needs to compute a year, -1 for models which can't run over chunks
+    public int getChunkLag() {
+        return chunkLag;
+    }
+
+    public void setLL(Object model, int LL) {
+        if (llField != null) {
+            llField.setInt(model, LL);
+        }
+    }
+
+    public void run(Object model) {
+        if (runHandle == null) {
+            throw new RuntimeException("No run method found");
+        }
+        try {
+            runHandle.invokeExact(model);
+        } catch (Throwable e) {
+            throw new RuntimeException("Error happened during invocation of run method", e);
+        }
+    }
+
+    public boolean hasResetHook() {
+        return resetHandle != null;
+    }
+
+    public void reset(Object model) {
+        if (resetHandle == null) {
+            return;
+        }
+        try {
+            resetHandle.invokeExact(model);
+        } catch (Throwable e) {
+            throw new RuntimeException("Error happened during invocation of reset method", e);
+        }
+    }
+
+    public record BoundField(String name, Class<?> type, boolean isStatic, VarHandle handle) {
+
+        public boolean isLL() {
+            return name.equals("LL");
+        }
+
+        public Object get(Object model) {
+            return isStatic ? handle.get() : handle.get(model);
+        }
+
+        public double[] getValues(Object model) {
+            return (double[]) get(model);
+        }
+
+        public void set(Object model, Object value) {
+            if (isStatic) {
+                handle.set(value);
+            }
+            else {
+                handle.set(model, value);
+            }
+        }
+
+        public void setInt(Object model, int value) {
+            if (isStatic) {
+                handle.set(value);
+            }
+            else {
+                handle.set(model, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package Main;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//idle instances of one model class, reused by controllers instead of constructing a new model for every run
+//returned instances get their @Bind fields back to the values of a new instance, auxiliary fields are up to
+//the model's @Reset method
+public final class ModelPool {
+
+    private static final int DEFAULT_SIZE = Integer.getInteger("reflectivescripting.modelPool.size", 8);
+    private static final Map<Class<?>, ModelPool> SHARED = new ConcurrentHashMap<>();
+
+    private final ModelBinding binding;
+    private final int maxIdle;
+    private final ConcurrentLinkedDeque<Object> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    //values of binded fields right after construction, arrays are cloned for every reset
+    private final List<ModelBinding.BoundField> resetFields;
+    private final Object[] defaults;
+
+    //statistics
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger peakInUse = new AtomicInteger();
+
+    public ModelPool(Class<?> modelClass, int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("Model pool size can't be negative: " + maxIdle);
+        }
+        this.binding = ModelBinding.of(modelClass);
+        this.maxIdle = maxIdle;
+
+        //first instance is kept as the source of default values, then it is pooled like any other
+        Object prototype = binding.newInstance();
+        created.incrementAndGet();
+        this.resetFields = binding.getFields().stream().filter(field -> !field.isStatic()).toList();
+        this.defaults = new Object[resetFields.size()];
+        for (int i = 0; i < defaults.length; i++) {
+            Object value = resetFields.get(i).get(prototype);
+            defaults[i] = value instanceof double[] values ? values.clone() : value;
+        }
+        if (maxIdle > 0) {
+            idle.push(prototype);
+            idleCount.incrementAndGet();
+        }
+    }
+
+    public static ModelPool of(String modelName) {
+        return of(ModelBinding.loadClass(modelName));
+    }
+
+    //pools shared by all controllers, one per model class, with size set by -Dreflectivescripting.modelPool.size
+    public static ModelPool of(Class<?> modelClass) {
+        ModelPool pool = SHARED.get(modelClass);
+        if (pool == null) {
+            pool = SHARED.computeIfAbsent(modelClass, key -> new ModelPool(key, DEFAULT_SIZE));
+        }
+        return pool;
+    }
+
+    //drops the pools of classes of a replaced class loader, so the loader and its classes can be unloaded;
+    //controllers holding one of those pools still give their models back to it
+    static void evict(ClassLoader loader) {
+        SHARED.keySet().removeIf(modelClass -> modelClass.getClassLoader() == loader);
+    }
+
+    public Object borrow() {
+        borrowed.incrementAndGet();
+        Object model = idle.poll();
+        if (model != null) {
+            idleCount.decrementAndGet();
+            reused.incrementAndGet();
+        }
+        else {
+            model = binding.newInstance();
+            created.incrementAndGet();
+        }
+
+        int current = inUse.incrementAndGet();
+        peakInUse.accumulateAndGet(current, Math::max);
+        return model;
+    }
+
+    public void release(Object model) {
+        if (model.getClass() != binding.getModelClass()) {
+            throw new IllegalArgumentException("Model " + model.getClass().getName()
+                    + " doesn't belong to the pool of " + binding.getModelClass().getName());
+        }
+        inUse.decrementAndGet();
+
+        //an instance which can't be reset is dropped, it may be in any state
+        try {
+            reset(model);
+        } catch (RuntimeException e) {
+            discarded.incrementAndGet();
+            return;
+        }
+
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.push(model);
+        }
+        else {
+            idleCount.decrementAndGet();
+            discarded.incrementAndGet();
+        }
+    }
+
+    private void reset(Object model) {
+        for (int i = 0; i < defaults.length; i++) {
+            Object value = defaults[i];
+            resetFields.get(i).set(model, value instanceof double[] values ? values.clone() : value);
+        }
+        binding.reset(model);
+    }
+
+    public void clear() {
+        while (idle.poll() != null) {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    public Class<?> getModelClass() {
+        return binding.getModelClass();
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public int getIdle() {
+        return idleCount.get();
+    }
+
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    public int getPeakInUse() {
+        return peakInUse.get();
+    }
+
+    public long getBorrowed() {
+        return borrowed.get();
+    }
+
+    public long getCreated() {
+        return created.get();
+    }
+
+    public long getReused() {
+        return reused.get();
+    }
+
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    //share of borrows served by an idle instance
+    public double getReuseRatio() {
+        long borrows = borrowed.get();
+        return borrows == 0 ? 0 : (double) reused.get() / borrows;
+    }
+
+    @Override
+    public String toString() {
+        return "ModelPool[" + binding.getModelClass().getName()
+                + ", idle=" + getIdle() + "/" + maxIdle
+                + ", inUse=" + getInUse()
+                + ", borrowed=" + getBorrowed()
+                + ", peakInUse=" + getPeakInUse()
+                + ", created=" + getCreated()
+                + ", reused=" + getReused()
+                + ", discarded=" + getDiscarded() + "]";
+    }
+}
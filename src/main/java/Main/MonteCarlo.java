@@ -0,0 +1,339 @@
+package Main;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//sensitivity runs: the model is run many times over in-memory base data with some inputs perturbed at random,
+//outputs are aggregated into mean, variance, min, max and percentiles per variable and year as samples finish,
+//no sample's results are kept
+//every worker thread has its own controller with a model borrowed from the pool, samples are taken in chunks,
+//every chunk has its own generator split from the seed and chunks are aggregated in order, so the results
+//depend on the seed but not on the parallelism
+public final class MonteCarlo {
+
+    private static final int SAMPLES_PER_CHUNK = 64;
+
+    private final Class<?> modelClass;
+    private final DataFile baseData;
+    private final List<Perturbed> perturbations = new ArrayList<>();
+    private final List<String> scripts = new ArrayList<>();
+    private final LinkedHashSet<String> outputs = new LinkedHashSet<>();
+    private double[] percentiles = {0.05, 0.5, 0.95};
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long seed = ThreadLocalRandom.current().nextLong();
+
+    public MonteCarlo(String modelName, DataFile baseData) {
+        this(ModelBinding.loadClass(modelName), baseData);
+    }
+
+    public MonteCarlo(Class<?> modelClass, DataFile baseData) {
+        this.modelClass = modelClass;
+        this.baseData = baseData;
+    }
+
+    //perturbations of one variable are applied in the order they were added
+    public MonteCarlo perturb(String variable, Perturbation perturbation) {
+        if (!baseData.contains(variable)) {
+            throw new IllegalArgumentException("Variable " + variable + " not found in the base data");
+        }
+        perturbations.add(new Perturbed(variable, perturbation));
+        return this;
+    }
+
+    //run after the model in every sample
+    public MonteCarlo addScript(String script) {
+        scripts.add(script);
+        return this;
+    }
+
+    //variables to aggregate, by default all model variables and the ones assigned by scripts
+    public MonteCarlo addOutput(String... variables) {
+        outputs.addAll(List.of(variables));
+        return this;
+    }
+
+    //percentiles estimated for every output, as fractions between 0 and 1
+    public MonteCarlo usePercentiles(double... percentiles) {
+        this.percentiles = percentiles.clone();
+        return this;
+    }
+
+    public MonteCarlo useParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public MonteCarlo useSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public MonteCarloResults run(int samples) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("Samples count must be positive: " + samples);
+        }
+        ModelBinding binding = ModelBinding.of(modelClass);
+        if (parallelism > 1 && binding.getFields().stream().anyMatch(ModelBinding.BoundField::isStatic)) {
+            throw new RuntimeException("Model " + modelClass.getName() + " has static @Bind fields, its samples can't run in parallel");
+        }
+        long start = System.nanoTime();
+        String[] years = baseData.getYears();
+        List<String> outputNames = new ArrayList<>(outputs);
+        if (outputNames.isEmpty()) {
+            for (ModelBinding.BoundField field : binding.getFields()) {
+                if (!field.isLL()) {
+                    outputNames.add(field.name());
+                }
+            }
+            for (String script : scripts) {
+                for (String variable : Controller.retrieveAssignedVariablesFromScript(script)) {
+                    if (!outputNames.contains(variable) && binding.getField(variable) == null) {
+                        outputNames.add(variable);
+                    }
+                }
+            }
+        }
+
+        //base values are copied once, a lazy base file is read here and not by the workers
+        Map<String, double[]> base = new LinkedHashMap<>();
+        for (String name : baseData.getVariableNames()) {
+            base.put(name, baseData.get(name));
+        }
+        Sampling sampling = new Sampling(samples, base, outputNames,
+                new StreamingStatistics(outputNames.size() * years.length, percentiles));
+        int workers = Math.min(parallelism, sampling.chunks);
+        ExecutorService executor = new ForkJoinPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> {
+                    work(sampling);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sampling.fail();
+            throw new RuntimeException("Monte Carlo run was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while running Monte Carlo samples", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new MonteCarloResults(years, outputNames, sampling.statistics, seed, System.nanoTime() - start);
+    }
+
+    private void work(Sampling sampling) throws InterruptedException {
+        String[] years = baseData.getYears();
+        int LL = years.length;
+        int cells = sampling.outputs.size() * LL;
+
+        //inputs of a sample start as copies of the base data, the store and its blocks are reused by every sample
+        VariableStore inputs = VariableStore.onHeap();
+        Map<String, double[]> perturbed = new HashMap<>();
+        for (Perturbed perturbation : perturbations) {
+            perturbed.computeIfAbsent(perturbation.variable(), name -> new double[LL]);
+        }
+        DataFile sampleData = new DataFile(years, inputs);
+
+        try (Controller controller = Controller.fromPool(ModelPool.of(modelClass))) {
+            while (!sampling.failed.get()) {
+                //chunks beyond the window wait until the oldest ones are aggregated, so memory stays bounded
+                sampling.window.acquire();
+                int chunk;
+                SplittableRandom random;
+                synchronized (sampling) {
+                    chunk = sampling.nextChunk;
+                    if (chunk >= sampling.chunks || sampling.failed.get()) {
+                        sampling.window.release();
+                        return;
+                    }
+                    sampling.nextChunk++;
+                    random = sampling.random.split();
+                }
+
+                int first = chunk * SAMPLES_PER_CHUNK;
+                int count = Math.min(SAMPLES_PER_CHUNK, sampling.samples - first);
+                double[] values = new double[count * cells];
+                int sample = 0;
+                try {
+                    for (; sample < count; sample++) {
+                        for (Map.Entry<String, double[]> variable : sampling.base.entrySet()) {
+                            double[] target = perturbed.get(variable.getKey());
+                            if (target == null) {
+                                inputs.put(variable.getKey(), variable.getValue());
+                            }
+                            else {
+                                System.arraycopy(variable.getValue(), 0, target, 0, LL);
+                            }
+                        }
+                        for (Perturbed perturbation : perturbations) {
+                            perturbation.perturbation().apply(perturbed.get(perturbation.variable()), random);
+                        }
+                        for (Map.Entry<String, double[]> variable : perturbed.entrySet()) {
+                            inputs.put(variable.getKey(), variable.getValue());
+                        }
+
+                        controller.readData(sampleData).runModel();
+                        for (String script : scripts) {
+                            controller.runScript(script);
+                        }
+                        copyOutputs(controller, sampling.outputs, LL, values, sample * cells);
+                    }
+                } catch (RuntimeException e) {
+                    sampling.fail();
+                    throw new RuntimeException("Error while running sample " + (first + sample), e);
+                }
+                sampling.aggregate(chunk, values, count, cells);
+            }
+        }
+    }
+
+    private static void copyOutputs(Controller controller, List<String> outputs, int LL, double[] values, int offset) {
+        VariableStore modelVariables = controller.getModelVariables();
+        VariableStore scriptVariables = controller.getScriptVariables();
+        for (int i = 0; i < outputs.size(); i++) {
+            String name = outputs.get(i);
+            VariableStore store = scriptVariables.contains(name) ? scriptVariables : modelVariables;
+            int id = store.id(name);
+            if (id < 0) {
+                throw new RuntimeException("Output variable " + name + " wasn't computed");
+            }
+            if (store.length(id) != LL) {
+                throw new RuntimeException("Output variable " + name + " has " + store.length(id) + " values instead of " + LL);
+            }
+            for (int year = 0; year < LL; year++) {
+                values[offset + i * LL + year] = store.get(id, year);
+            }
+        }
+    }
+
+    //changes the values of one variable for one sample, in place
+    @FunctionalInterface
+    public interface Perturbation {
+
+        void apply(double[] values, SplittableRandom random);
+
+        //one draw added to every year
+        static Perturbation shift(Distribution distribution) {
+            return (values, random) -> {
+                double shift = distribution.sample(random);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] += shift;
+                }
+            };
+        }
+
+        //one draw multiplying every year
+        static Perturbation scale(Distribution distribution) {
+            return (values, random) -> {
+                double factor = distribution.sample(random);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] *= factor;
+                }
+            };
+        }
+
+        //independent draw added to each year
+        static Perturbation shiftEachYear(Distribution distribution) {
+            return (values, random) -> {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] += distribution.sample(random);
+                }
+            };
+        }
+    }
+
+    @FunctionalInterface
+    public interface Distribution {
+
+        double sample(SplittableRandom random);
+
+        static Distribution normal(double mean, double standardDeviation) {
+            return random -> random.nextGaussian(mean, standardDeviation);
+        }
+
+        static Distribution uniform(double min, double max) {
+            return random -> random.nextDouble(min, max);
+        }
+
+        static Distribution triangular(double min, double mode, double max) {
+            return random -> {
+                double u = random.nextDouble();
+                double split = (mode - min) / (max - min);
+                return u < split
+                        ? min + Math.sqrt(u * (max - min) * (mode - min))
+                        : max - Math.sqrt((1 - u) * (max - min) * (max - mode));
+            };
+        }
+    }
+
+    private record Perturbed(String variable, Perturbation perturbation) {
+    }
+
+    //state shared by the workers of one run
+    private final class Sampling {
+
+        private final int samples;
+        private final Map<String, double[]> base;
+        private final int chunks;
+        private final List<String> outputs;
+        private final StreamingStatistics statistics;
+        private final SplittableRandom random = new SplittableRandom(seed);
+        private final Semaphore window;
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private int nextChunk = 0;
+
+        //finished chunks waiting for the ones before them
+        private final Map<Integer, double[]> pending = new HashMap<>();
+        private final Map<Integer, Integer> pendingCounts = new HashMap<>();
+        private int nextToAggregate = 0;
+
+        Sampling(int samples, Map<String, double[]> base, List<String> outputs, StreamingStatistics statistics) {
+            this.samples = samples;
+            this.base = base;
+            this.chunks = (samples + SAMPLES_PER_CHUNK - 1) / SAMPLES_PER_CHUNK;
+            this.outputs = outputs;
+            this.statistics = statistics;
+            this.window = new Semaphore(Math.max(2, parallelism * 2));
+        }
+
+        //workers waiting for the window stop as well
+        void fail() {
+            failed.set(true);
+            window.release(chunks);
+        }
+
+        synchronized void aggregate(int chunk, double[] values, int count, int cells) {
+            pending.put(chunk, values);
+            pendingCounts.put(chunk, count);
+            while (pending.containsKey(nextToAggregate)) {
+                double[] chunkValues = pending.remove(nextToAggregate);
+                int chunkCount = pendingCounts.remove(nextToAggregate);
+                for (int sample = 0; sample < chunkCount; sample++) {
+                    statistics.add(chunkValues, sample * cells);
+                }
+                nextToAggregate++;
+                window.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package Main;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//statistics of every output variable per year over all samples of a Monte Carlo run
+public final class MonteCarloResults {
+
+    private final String[] years;
+    private final List<String> variables;
+    private final StreamingStatistics statistics;
+    private final long seed;
+    private final long elapsedNanos;
+
+    MonteCarloResults(String[] years, List<String> variables, StreamingStatistics statistics, long seed, long elapsedNanos) {
+        this.years = years;
+        this.variables = List.copyOf(variables);
+        this.statistics = statistics;
+        this.seed = seed;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getSamples() {
+        return statistics.getCount();
+    }
+
+    //the same seed, inputs and sample count give the same results, whatever the parallelism
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public String[] getYears() {
+        return years.clone();
+    }
+
+    public List<String> getVariableNames() {
+        return variables;
+    }
+
+    public double[] getMean(String variable) {
+        int first = firstCell(variable);
+        double[] values = new double[years.length];
+        for (int year = 0; year < years.length; year++) {
+            values[year] = statistics.getMean(first + year);
+        }
+        return values;
+    }
+
+    public double[] getVariance(String variable) {
+        int first = firstCell(variable);
+        double[] values = new double[years.length];
+        for (int year = 0; year < years.length; year++) {
+            values[year] = statistics.getVariance(first + year);
+        }
+        return values;
+    }
+
+    public double[] getStandardDeviation(String variable) {
+        double[] values = getVariance(variable);
+        for (int year = 0; year < values.length; year++) {
+            values[year] = Math.sqrt(values[year]);
+        }
+        return values;
+    }
+
+    public double[] getMin(String variable) {
+        int first = firstCell(variable);
+        double[] values = new double[years.length];
+        for (int year = 0; year < years.length; year++) {
+            values[year] = statistics.getMin(first + year);
+        }
+        return values;
+    }
+
+    public double[] getMax(String variable) {
+        int first = firstCell(variable);
+        double[] values = new double[years.length];
+        for (int year = 0; year < years.length; year++) {
+            values[year] = statistics.getMax(first + year);
+        }
+        return values;
+    }
+
+    //estimate of one of the percentiles given to MonteCarlo.usePercentiles
+    public double[] getPercentile(String variable, double percentile) {
+        int index = indexOfPercentile(percentile);
+        int first = firstCell(variable);
+        double[] values = new double[years.length];
+        for (int year = 0; year < years.length; year++) {
+            values[year] = statistics.getPercentile(first + year, index);
+        }
+        return values;
+    }
+
+    //rows named like KI.mean, KI.sd, KI.p5 and KI.p95, for the table and TSV export
+    public Results toResults() {
+        double[] percentiles = statistics.getPercentiles();
+        List<String> rowNames = new ArrayList<>();
+        List<double[]> rowValues = new ArrayList<>();
+        rowNames.add("LATA");
+        rowValues.add(null);
+        for (String variable : variables) {
+            rowNames.add(variable + ".mean");
+            rowValues.add(getMean(variable));
+            rowNames.add(variable + ".sd");
+            rowValues.add(getStandardDeviation(variable));
+            rowNames.add(variable + ".min");
+            rowValues.add(getMin(variable));
+            rowNames.add(variable + ".max");
+            rowValues.add(getMax(variable));
+            for (double percentile : percentiles) {
+                rowNames.add(variable + ".p" + BigDecimal.valueOf(percentile * 100).stripTrailingZeros().toPlainString());
+                rowValues.add(getPercentile(variable, percentile));
+            }
+        }
+        return new Results(years, rowNames, rowValues);
+    }
+
+    public String getAsTsv() {
+        return toResults().getAsTsv();
+    }
+
+    private int firstCell(String variable) {
+        int index = variables.indexOf(variable);
+        if (index < 0) {
+            throw new IllegalArgumentException("Variable " + variable + " isn't an output of this run");
+        }
+        return index * years.length;
+    }
+
+    private int indexOfPercentile(double percentile) {
+        double[] percentiles = statistics.getPercentiles();
+        for (int i = 0; i < percentiles.length; i++) {
+            if (percentiles[i] == percentile) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Percentile " + percentile + " wasn't tracked, tracked are " + Arrays.toString(percentiles));
+    }
+}
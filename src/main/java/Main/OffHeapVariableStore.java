@@ -0,0 +1,119 @@
+package Main;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//blocks are carved from large direct buffers, so thousands of variables don't add to the garbage collected heap
+final class OffHeapVariableStore extends AbstractVariableStore {
+
+    private static final int INITIAL_SLAB_DOUBLES = 64 * 1024;
+    private static final int MAX_SLAB_DOUBLES = 8 * 1024 * 1024;
+
+    private final List<DoubleBuffer> slabs = new ArrayList<>();
+    private int currentSlab = -1;
+    private int slabPosition = 0;
+
+    //location of every block, capacity is kept so shorter values can reuse it
+    private int[] blockSlabs = new int[16];
+    private int[] blockOffsets = new int[16];
+    private int[] blockLengths = new int[16];
+    private int[] blockCapacities = new int[16];
+
+    @Override
+    public int length(int id) {
+        checkId(id);
+        return blockLengths[id];
+    }
+
+    @Override
+    public double get(int id, int index) {
+        checkIndex(id, index);
+        return slabs.get(blockSlabs[id]).get(blockOffsets[id] + index);
+    }
+
+    @Override
+    public void set(int id, int index, double value) {
+        checkIndex(id, index);
+        slabs.get(blockSlabs[id]).put(blockOffsets[id] + index, value);
+    }
+
+    @Override
+    public void copyTo(int id, double[] target) {
+        checkId(id);
+        if (blockLengths[id] == 0) {
+            return;
+        }
+        slabs.get(blockSlabs[id]).get(blockOffsets[id], target, 0, blockLengths[id]);
+    }
+
+    @Override
+    protected void write(int id, double[] values, int length) {
+        ensureCapacity(id);
+        blockLengths[id] = length;
+        if (length == 0) {
+            return;
+        }
+        if (blockCapacities[id] < length) {
+            allocate(id, length);
+        }
+        slabs.get(blockSlabs[id]).put(blockOffsets[id], values, 0, length);
+    }
+
+    //space of a released block is given back only by clear()
+    @Override
+    protected void release(int id) {
+        blockLengths[id] = 0;
+        blockCapacities[id] = 0;
+    }
+
+    @Override
+    protected void releaseAll() {
+        Arrays.fill(blockLengths, 0);
+        Arrays.fill(blockCapacities, 0);
+        currentSlab = slabs.isEmpty() ? -1 : 0;
+        slabPosition = 0;
+    }
+
+    private void allocate(int id, int length) {
+        //moving to the next slab (reusing the ones kept after clear) or creating a new one
+        while (currentSlab < 0 || slabPosition + length > slabs.get(currentSlab).capacity()) {
+            if (currentSlab + 1 < slabs.size()) {
+                currentSlab++;
+            }
+            else {
+                int lastCapacity = slabs.isEmpty() ? INITIAL_SLAB_DOUBLES / 2 : slabs.get(slabs.size() - 1).capacity();
+                int capacity = Math.max(length, Math.min(MAX_SLAB_DOUBLES, lastCapacity * 2));
+                slabs.add(ByteBuffer.allocateDirect(Math.multiplyExact(capacity, Double.BYTES))
+                        .order(ByteOrder.nativeOrder())
+                        .asDoubleBuffer());
+                currentSlab = slabs.size() - 1;
+            }
+            slabPosition = 0;
+        }
+
+        blockSlabs[id] = currentSlab;
+        blockOffsets[id] = slabPosition;
+        blockCapacities[id] = length;
+        slabPosition += length;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= blockSlabs.length) {
+            int newLength = Math.max(id + 1, blockSlabs.length * 2);
+            blockSlabs = Arrays.copyOf(blockSlabs, newLength);
+            blockOffsets = Arrays.copyOf(blockOffsets, newLength);
+            blockLengths = Arrays.copyOf(blockLengths, newLength);
+            blockCapacities = Arrays.copyOf(blockCapacities, newLength);
+        }
+    }
+
+    private void checkIndex(int id, int index) {
+        if (index < 0 || index >= blockLengths[id]) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + blockLengths[id]);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package Main;
+
+import java.lang.management.ManagementFactory;
+
+//wall time and bytes allocated by the current thread since the phase started
+final class PhaseClock {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final long startNanos;
+    private final long startBytes;
+
+    private PhaseClock() {
+        this.startBytes = THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+        this.startNanos = System.nanoTime();
+    }
+
+    static PhaseClock start() {
+        return new PhaseClock();
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    //virtual threads have no allocation counter, the bean reports -1 for them
+    long allocatedBytes() {
+        if (THREADS == null || startBytes < 0) {
+            return -1;
+        }
+        long endBytes = THREADS.getCurrentThreadAllocatedBytes();
+        return endBytes < 0 ? -1 : endBytes - startBytes;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        //allocation counters exist only on HotSpot based JVMs and can be switched off
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean;
+        }
+        return null;
+    }
+}
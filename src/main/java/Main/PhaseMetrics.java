@@ -0,0 +1,10 @@
+package Main;
+
+//measurements of one phase, allocatedBytes is -1 when the JVM can't measure allocations of a thread
+public record PhaseMetrics(String model, ControllerPhase phase, long wallNanos, long allocatedBytes,
+                           int variables, long elements, Throwable error) {
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+}
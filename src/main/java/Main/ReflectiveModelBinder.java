@@ -0,0 +1,49 @@
+package Main;
+
+//binder of model classes compiled without the binder processor, goes through the handles of ModelBinding
+final class ReflectiveModelBinder implements ModelBinder {
+
+    private final ModelBinding binding;
+
+    ReflectiveModelBinder(ModelBinding binding) {
+        this.binding = binding;
+    }
+
+    @Override
+    public Class<?> getModelClass() {
+        return binding.getModelClass();
+    }
+
+    @Override
+    public void writeFrom(Object model, VariableStore store, int LL) {
+        for (ModelBinding.BoundField field : binding.getFields()) {
+            if (field.isLL()) {
+                field.setInt(model, LL);
+            }
+            else {
+                double[] values = store.toArray(field.name());
+                field.set(model, values == null ? new double[LL] : values);
+            }
+        }
+    }
+
+    @Override
+    public void readInto(Object model, VariableStore store) {
+        for (ModelBinding.BoundField field : binding.getFields()) {
+            if (!field.isLL()) {
+                double[] values = field.getValues(model);
+                if (values != null) {
+                    store.put(field.name(), values);
+                }
+                else {
+                    store.remove(field.name());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void run(Object model) {
+        binding.run(model);
+    }
+}
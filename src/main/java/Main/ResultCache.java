@@ -0,0 +1,416 @@
+package Main;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+//results of runs kept on disk, one binary results file per key, so a run over the same model, data and scripts
+//is read back instead of computed again, also by later processes
+//keys are chained: the data key hashes the code of the model, the contents of the data file and the year window,
+//every step (model run, script) hashes the key of the state before it with what the step runs
+//the code of the model is the jar or class directory holding the model class and each of its superclasses, so helper
+//classes next to the model are covered, but libraries from other jars or directories it calls aren't: set
+//-Dreflectivescripting.resultCache.version to something new when they change, it is part of every data key
+//cached steps are assumed to be deterministic, models and scripts which read clocks or random numbers shouldn't use it
+//least recently used files are deleted once the directory holds more than the size limit
+public final class ResultCache {
+
+    private static final String SUFFIX = ".res";
+    private static volatile ResultCache shared;
+
+    private final Path directory;
+    private final long maxBytes;
+    //access-ordered map of keys and file sizes, so the eldest entry is always the least recently used one
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    //hashes of data files, reused as long as the modification time and size of the file stay the same
+    private final Map<Path, FileHash> fileHashes = new ConcurrentHashMap<>();
+    private static final ClassValue<String> CLASS_HASHES = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return hashClass(type);
+        }
+    };
+
+    //statistics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private ResultCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    //files already in the directory are kept, the ones used longest ago are evicted first
+    public static ResultCache open(Path directory, long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Result cache size must be positive: " + maxBytes);
+        }
+        ResultCache cache = new ResultCache(directory, maxBytes);
+        cache.load();
+        return cache;
+    }
+
+    //cache of the server and the command line, in -Dreflectivescripting.resultCache.dir (by default
+    //~/.reflectivescripting/results) and limited by -Dreflectivescripting.resultCache.maxBytes
+    public static ResultCache getShared() {
+        ResultCache cache = shared;
+        if (cache == null) {
+            synchronized (ResultCache.class) {
+                cache = shared;
+                if (cache == null) {
+                    cache = open(Path.of(System.getProperty("reflectivescripting.resultCache.dir",
+                                    Path.of(System.getProperty("user.home"), ".reflectivescripting", "results").toString())),
+                            Long.getLong("reflectivescripting.resultCache.maxBytes", 512L << 20));
+                    shared = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    //null until the shared cache is first used, so reporting on it doesn't create its directory
+    static ResultCache getSharedIfOpen() {
+        return shared;
+    }
+
+    private void load() {
+        List<Map.Entry<String, BasicFileAttributes>> files = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                for (Path file : stream) {
+                    String name = file.getFileName().toString();
+                    files.add(Map.entry(name.substring(0, name.length() - SUFFIX.length()),
+                            Files.readAttributes(file, BasicFileAttributes.class)));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error while opening result cache:\n" + directory, e);
+        }
+
+        //files are touched on every hit, so their modification times give the order of use
+        files.sort(Comparator.comparing(file -> file.getValue().lastModifiedTime()));
+        synchronized (entries) {
+            for (Map.Entry<String, BasicFileAttributes> file : files) {
+                entries.put(file.getKey(), file.getValue().size());
+                bytes += file.getValue().size();
+            }
+            evict();
+        }
+    }
+
+    //results stored under the key, null on a miss
+    BinaryResultsFile get(String key) {
+        synchronized (entries) {
+            if (entries.get(key) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        Path file = fileOf(key);
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            //deleted by another process or by eviction in the meantime
+            remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+        //read into the heap, so the file can be evicted while its results are still in use
+        try {
+            BinaryResultsFile results = new BinaryResultsFile(ByteBuffer.wrap(content), file.toString());
+            hits.incrementAndGet();
+            return results;
+        } catch (RuntimeException e) {
+            remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    //writer gets the stream of a temporary file, which replaces the entry of the key once it is complete
+    void put(String key, Consumer<OutputStream> writer) {
+        Path file = fileOf(key);
+        Path temporary = null;
+        long size;
+        try {
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                writer.accept(output);
+            }
+            size = Files.size(temporary);
+            if (size > maxBytes) {
+                Files.delete(temporary);
+                return;
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                }
+            }
+            throw new RuntimeException("Error while writing to result cache:\n" + file, e);
+        }
+
+        stores.incrementAndGet();
+        synchronized (entries) {
+            Long previous = entries.put(key, size);
+            bytes += size - (previous == null ? 0 : previous);
+            evict();
+        }
+    }
+
+    private void evict() {
+        while (bytes > maxBytes && !entries.isEmpty()) {
+            Map.Entry<String, Long> eldest = entries.entrySet().iterator().next();
+            entries.remove(eldest.getKey());
+            bytes -= eldest.getValue();
+            evictions.incrementAndGet();
+            try {
+                Files.deleteIfExists(fileOf(eldest.getKey()));
+            } catch (IOException ignored) {
+                //left for the next process to find, its size is no longer counted
+            }
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (entries) {
+            Long size = entries.remove(key);
+            if (size != null) {
+                bytes -= size;
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            for (String key : entries.keySet()) {
+                try {
+                    Files.deleteIfExists(fileOf(key));
+                } catch (IOException e) {
+                    throw new RuntimeException("Error while clearing result cache:\n" + directory, e);
+                }
+            }
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    private Path fileOf(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    //key of the data read by a model, before anything was run
+    String dataKey(Class<?> modelClass, Path dataFile, String firstYear, String lastYear) {
+        return hash(CLASS_HASHES.get(modelClass), System.getProperty("reflectivescripting.resultCache.version", ""),
+                hashFile(dataFile), String.valueOf(firstYear), String.valueOf(lastYear));
+    }
+
+    //key of the state after one more step
+    static String chain(String key, String... step) {
+        String[] parts = new String[step.length + 1];
+        parts[0] = key;
+        System.arraycopy(step, 0, parts, 1, step.length);
+        return hash(parts);
+    }
+
+    private String hashFile(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(absolute, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("File not found:\n" + path, e);
+        } catch (IOException e) {
+            throw new RuntimeException("Error occurred while reading from file", e);
+        }
+        long modified = attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS);
+        FileHash known = fileHashes.get(absolute);
+        if (known != null && known.modified() == modified && known.size() == attributes.size()) {
+            return known.hash();
+        }
+
+        MessageDigest digest = newDigest();
+        digest.update(DataFileParser.map(absolute));
+        String hash = HexFormat.of().formatHex(digest.digest());
+        fileHashes.put(absolute, new FileHash(modified, attributes.size(), hash));
+        return hash;
+    }
+
+    //bytecode of the class and of its superclasses, and all of the jars or class directories they were loaded from, so
+    //recompiling any class next to them gives new keys
+    private static String hashClass(Class<?> type) {
+        MessageDigest digest = newDigest();
+        Set<Path> codeSources = new HashSet<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            String resource = current.getName().substring(current.getName().lastIndexOf('.') + 1) + ".class";
+            try (InputStream input = current.getResourceAsStream(resource)) {
+                if (input == null) {
+                    throw new RuntimeException("Bytecode of class " + current.getName() + " not found");
+                }
+                digest.update(current.getName().getBytes(StandardCharsets.UTF_8));
+                digest.update(input.readAllBytes());
+            } catch (IOException e) {
+                throw new RuntimeException("Error while reading bytecode of class " + current.getName(), e);
+            }
+            Path codeSource = codeSourceOf(current);
+            if (codeSource != null && codeSources.add(codeSource)) {
+                hashCodeSource(codeSource, digest);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    //jar or class directory of a class, null for classes which don't come from a local file
+    private static Path codeSourceOf(Class<?> type) {
+        CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null || !"file".equals(codeSource.getLocation().getProtocol())) {
+            return null;
+        }
+        try {
+            return Path.of(codeSource.getLocation().toURI()).toAbsolutePath().normalize();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    //every class file of the jar or directory with its path, in a fixed order, so rebuilding the same classes keeps the hash
+    private static void hashCodeSource(Path codeSource, MessageDigest digest) {
+        try {
+            if (!Files.isDirectory(codeSource)) {
+                try (ZipFile jar = new ZipFile(codeSource.toFile())) {
+                    List<ZipEntry> classFiles = jar.stream().map(ZipEntry.class::cast)
+                            .filter(entry -> entry.getName().endsWith(".class"))
+                            .sorted(Comparator.comparing(ZipEntry::getName)).toList();
+                    for (ZipEntry classFile : classFiles) {
+                        digest.update(classFile.getName().getBytes(StandardCharsets.UTF_8));
+                        try (InputStream input = jar.getInputStream(classFile)) {
+                            digest.update(input.readAllBytes());
+                        }
+                    }
+                }
+                return;
+            }
+            List<Path> classFiles;
+            try (Stream<Path> files = Files.walk(codeSource)) {
+                classFiles = files.filter(file -> file.toString().endsWith(".class") && Files.isRegularFile(file))
+                        .sorted().toList();
+            }
+            for (Path classFile : classFiles) {
+                digest.update(codeSource.relativize(classFile).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(classFile));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Error while reading classes from:\n" + codeSource, e);
+        }
+    }
+
+    private static String hash(String... parts) {
+        MessageDigest digest = newDigest();
+        for (String part : parts) {
+            byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+            //length first, so parts can't run into each other
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, bytes.length));
+            digest.update(bytes);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getStores() {
+        return stores.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ResultCache[size=" + size() + ", bytes=" + getBytes() + "/" + maxBytes
+                + ", hits=" + getHits()
+                + ", misses=" + getMisses()
+                + ", stores=" + getStores()
+                + ", evictions=" + getEvictions() + "]";
+    }
+
+    private record FileHash(long modified, long size, String hash) {
+    }
+}
@@ -0,0 +1,133 @@
+package Main;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//detached snapshot of everything a controller would export, safe to keep after the controller is gone
+public final class Results {
+
+    private final String[] years;
+    private final List<String> rowNames;
+    private final List<double[]> rowValues;
+
+    //row values are null only for the LL row, which is exported as years
+    Results(String[] years, List<String> rowNames, List<double[]> rowValues) {
+        this.years = years;
+        this.rowNames = rowNames;
+        this.rowValues = rowValues;
+    }
+
+    //data file as it was read, before any model run
+    static Results of(DataFile dataFile) {
+        List<String> rowNames = new ArrayList<>();
+        List<double[]> rowValues = new ArrayList<>();
+        rowNames.add("LATA");
+        rowValues.add(null);
+        for (String variable : dataFile.getVariableNames()) {
+            rowNames.add(variable);
+            rowValues.add(dataFile.get(variable));
+        }
+        return new Results(dataFile.getYears(), rowNames, rowValues);
+    }
+
+    public String[] getYears() {
+        return years.clone();
+    }
+
+    public int getYearsCount() {
+        return years.length;
+    }
+
+    //names of all variables with values, LL is not included
+    public List<String> getVariableNames() {
+        List<String> names = new ArrayList<>(rowNames.size());
+        for (int i = 0; i < rowNames.size(); i++) {
+            if (rowValues.get(i) != null) {
+                names.add(rowNames.get(i));
+            }
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    public double[] get(String variable) {
+        int index = rowNames.indexOf(variable);
+        if (index < 0 || rowValues.get(index) == null) {
+            return null;
+        }
+        return rowValues.get(index).clone();
+    }
+
+    //row access without copying, for views that only read the values
+    int getRowCount() {
+        return rowNames.size();
+    }
+
+    String getRowName(int row) {
+        return rowNames.get(row);
+    }
+
+    double[] getRowValues(int row) {
+        return rowValues.get(row);
+    }
+
+    public String getAsTsv() {
+        StringBuilder returnString = new StringBuilder();
+        writeTsvTo(returnString);
+        return returnString.toString();
+    }
+
+    public void writeTsvTo(Appendable sink) {
+        TsvWriter tsvWriter = new TsvWriter(sink);
+        try {
+            for (int i = 0; i < rowNames.size(); i++) {
+                double[] values = rowValues.get(i);
+                if (values == null) {
+                    tsvWriter.writeYears(rowNames.get(i), years);
+                }
+                else {
+                    tsvWriter.writeValues(rowNames.get(i), values);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error occurred while writing results", e);
+        }
+    }
+
+    public void writeBinaryTo(OutputStream outputStream) {
+        String yearsName = null;
+        List<String> names = new ArrayList<>(rowNames.size());
+        List<double[]> columns = new ArrayList<>(rowNames.size());
+        for (int i = 0; i < rowNames.size(); i++) {
+            if (rowValues.get(i) != null) {
+                names.add(rowNames.get(i));
+                columns.add(rowValues.get(i));
+            }
+            else if (yearsName == null) {
+                yearsName = rowNames.get(i);
+            }
+        }
+        int[] lengths = new int[columns.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = columns.get(i).length;
+        }
+
+        BinaryResultsWriter binaryWriter = new BinaryResultsWriter(outputStream);
+        try {
+            binaryWriter.writeHeader(yearsName, years, names, lengths);
+            for (double[] column : columns) {
+                binaryWriter.writeColumn(column);
+            }
+            binaryWriter.finish();
+        } catch (IOException e) {
+            throw new RuntimeException("Error occurred while writing results", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getAsTsv();
+    }
+}
@@ -0,0 +1,132 @@
+package Main;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+//table of variables (rows) by years (columns), read straight from results without going through TSV
+final class ResultsTableModel extends AbstractTableModel {
+
+    private String[] years = new String[0];
+    private final List<String> names = new ArrayList<>();
+    private final List<double[]> values = new ArrayList<>();
+
+    //cells are formatted when a row is first shown and kept until its values change
+    private final List<String[]> formatted = new ArrayList<>();
+
+    //only rows with different values are repainted, unless the years or the variables themselves changed
+    void update(Results results) {
+        List<String> newNames = new ArrayList<>();
+        List<double[]> newValues = new ArrayList<>();
+        for (int row = 0; row < results.getRowCount(); row++) {
+            //LL row is shown as the header
+            if (results.getRowValues(row) != null) {
+                newNames.add(results.getRowName(row));
+                newValues.add(results.getRowValues(row));
+            }
+        }
+
+        String[] newYears = results.getYears();
+        if (!Arrays.equals(years, newYears)) {
+            years = newYears;
+            replaceRows(newNames, newValues);
+            fireTableStructureChanged();
+            return;
+        }
+
+        int common = Math.min(names.size(), newNames.size());
+        if (!names.subList(0, common).equals(newNames.subList(0, common))) {
+            replaceRows(newNames, newValues);
+            fireTableDataChanged();
+            return;
+        }
+
+        //notifying about consecutive changed rows as one range
+        int firstChanged = -1;
+        for (int row = 0; row < common; row++) {
+            if (Arrays.equals(values.get(row), newValues.get(row))) {
+                if (firstChanged >= 0) {
+                    fireTableRowsUpdated(firstChanged, row - 1);
+                    firstChanged = -1;
+                }
+                continue;
+            }
+            values.set(row, newValues.get(row));
+            formatted.set(row, null);
+            if (firstChanged < 0) {
+                firstChanged = row;
+            }
+        }
+        if (firstChanged >= 0) {
+            fireTableRowsUpdated(firstChanged, common - 1);
+        }
+
+        int oldSize = names.size();
+        if (newNames.size() > oldSize) {
+            for (int row = oldSize; row < newNames.size(); row++) {
+                names.add(newNames.get(row));
+                values.add(newValues.get(row));
+                formatted.add(null);
+            }
+            fireTableRowsInserted(oldSize, newNames.size() - 1);
+        }
+        else if (newNames.size() < oldSize) {
+            names.subList(common, oldSize).clear();
+            values.subList(common, oldSize).clear();
+            formatted.subList(common, oldSize).clear();
+            fireTableRowsDeleted(common, oldSize - 1);
+        }
+    }
+
+    private void replaceRows(List<String> newNames, List<double[]> newValues) {
+        names.clear();
+        names.addAll(newNames);
+        values.clear();
+        values.addAll(newValues);
+        formatted.clear();
+        formatted.addAll(Collections.nCopies(newNames.size(), null));
+    }
+
+    @Override
+    public int getRowCount() {
+        return names.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return years.length + 1;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return column == 0 ? "" : years[column - 1];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == 0) {
+            return names.get(row);
+        }
+
+        String[] cells = formatted.get(row);
+        if (cells == null) {
+            cells = format(values.get(row));
+            formatted.set(row, cells);
+        }
+        //script variables may be shorter than the years range
+        return column - 1 < cells.length ? cells[column - 1] : "";
+    }
+
+    private static String[] format(double[] rowValues) {
+        String[] cells = new String[rowValues.length];
+        StringBuilder cell = new StringBuilder(24);
+        for (int i = 0; i < rowValues.length; i++) {
+            cell.setLength(0);
+            DoubleFormatter.append(cell, rowValues[i]);
+            cells[i] = cell.toString();
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,173 @@
+package Main;
+
+import javax.script.Bindings;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+//bindings of a single controller, backed directly by the model fields and the store of script variables
+//model arrays are changed in place, script variables are copied out of the store on first use and back after the run
+//only reassigned variables are tracked and published
+final class ScriptBindings extends AbstractMap<String, Object> implements Bindings {
+
+    private final Object model;
+    private final ModelBinding binding;
+    private final VariableStore scriptVariables;
+
+    //script variables copied out of the store during the current run, written back on commit
+    private final Map<String, double[]> materialized = new HashMap<>();
+
+    //variables assigned during the current run, published only when the script succeeds
+    private final Map<String, Object> staged = new HashMap<>();
+    private final Set<String> dirty = new LinkedHashSet<>();
+
+    //anything that isn't an array (loop counters, engine attributes), never published
+    private final Map<String, Object> locals = new HashMap<>();
+
+    ScriptBindings(Object model, ModelBinding binding, VariableStore scriptVariables) {
+        this.model = model;
+        this.binding = binding;
+        this.scriptVariables = scriptVariables;
+    }
+
+    void beginRun() {
+        materialized.clear();
+        staged.clear();
+        dirty.clear();
+        locals.clear();
+    }
+
+    //returns names of variables which were published
+    Set<String> commit() {
+        Set<String> published = new LinkedHashSet<>(dirty);
+
+        //arrays which were only read could still be changed in place
+        for (Map.Entry<String, double[]> variable : materialized.entrySet()) {
+            if (!dirty.contains(variable.getKey())) {
+                scriptVariables.put(variable.getKey(), variable.getValue());
+            }
+        }
+        materialized.clear();
+
+        for (String variable : dirty) {
+            Object value = staged.get(variable);
+            ModelBinding.BoundField field = binding.getField(variable);
+            if (field == null) {
+                //script variable which is no longer an array stops being a result
+                if (value instanceof double[] values) {
+                    scriptVariables.put(variable, values);
+                }
+                else {
+                    scriptVariables.remove(variable);
+                }
+            }
+            else if (field.isLL()) {
+                if (!(value instanceof Number number)) {
+                    throw new RuntimeException("Variable LL must be a number");
+                }
+                field.setInt(model, number.intValue());
+            }
+            else {
+                if (value != null && !field.type().isInstance(value)) {
+                    throw new RuntimeException("Variable " + variable + " can't be assigned with " + typeName(value));
+                }
+                field.set(model, value);
+            }
+        }
+        staged.clear();
+        dirty.clear();
+        return published;
+    }
+
+    void rollback() {
+        materialized.clear();
+        staged.clear();
+        dirty.clear();
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String name)) {
+            return null;
+        }
+        if (staged.containsKey(name)) {
+            return staged.get(name);
+        }
+        ModelBinding.BoundField field = binding.getField(name);
+        if (field != null) {
+            return field.get(model);
+        }
+        double[] values = materialized.get(name);
+        if (values == null) {
+            values = scriptVariables.toArray(name);
+            if (values != null) {
+                materialized.put(name, values);
+            }
+        }
+        return values != null ? values : locals.get(name);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof String name)) {
+            return false;
+        }
+        return staged.containsKey(name)
+                || binding.getField(name) != null
+                || scriptVariables.contains(name)
+                || locals.containsKey(name);
+    }
+
+    @Override
+    public Object put(String name, Object value) {
+        Object previous = get(name);
+        if (binding.getField(name) != null || value instanceof double[] || scriptVariables.contains(name)) {
+            staged.put(name, value);
+            dirty.add(name);
+        }
+        else {
+            locals.put(name, value);
+        }
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> toMerge) {
+        for (Map.Entry<? extends String, ?> entry : toMerge.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    //only script-local values can be removed, model and script variables stay
+    @Override
+    public Object remove(Object key) {
+        if (!(key instanceof String name)) {
+            return null;
+        }
+        if (dirty.remove(name)) {
+            return staged.remove(name);
+        }
+        return locals.remove(name);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (ModelBinding.BoundField field : binding.getFields()) {
+            snapshot.put(field.name(), field.get(model));
+        }
+        for (String variable : scriptVariables.names()) {
+            snapshot.put(variable, get(variable));
+        }
+        snapshot.putAll(locals);
+        snapshot.putAll(staged);
+        return snapshot.entrySet();
+    }
+
+    private static String typeName(Object value) {
+        return value == null ? "null" : value.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,180 @@
+package Main;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class ScriptCache {
+
+    static final int DEFAULT_CAPACITY = Integer.getInteger("reflectivescripting.scriptCache.size", 64);
+    private static final ScriptCache SHARED = new ScriptCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final Map<String, CompiledScript> compiledScripts;
+    private final Map<String, Optional<VectorizedScript>> vectorizedScripts;
+    private final Supplier<ScriptEngine> engineFactory;
+    private volatile ScriptEngine scriptEngine;
+
+    //statistics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ScriptCache(int capacity) {
+        this(capacity, () -> new ScriptEngineManager().getEngineByName("groovy"));
+    }
+
+    //engine created on the first compilation, like the one of a sandbox with its own compiler configuration
+    ScriptCache(int capacity, Supplier<ScriptEngine> engineFactory) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Script cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.engineFactory = engineFactory;
+
+        //access-ordered map, so the eldest entry is always the least recently used one
+        this.compiledScripts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+                if (size() > ScriptCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.vectorizedScripts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Optional<VectorizedScript>> eldest) {
+                return size() > ScriptCache.this.capacity;
+            }
+        };
+    }
+
+    public static ScriptCache getShared() {
+        return SHARED;
+    }
+
+    public CompiledScript compile(String script) {
+        String key = hash(script);
+
+        synchronized (compiledScripts) {
+            CompiledScript compiledScript = compiledScripts.get(key);
+            if (compiledScript != null) {
+                hits.incrementAndGet();
+                return compiledScript;
+            }
+        }
+        misses.incrementAndGet();
+
+        //compiling outside the lock, so different scripts don't wait for each other
+        CompiledScript compiledScript;
+        try {
+            compiledScript = ((Compilable) getEngine()).compile(script);
+        } catch (ScriptException e) {
+            throw new RuntimeException("Error while compiling groovy script", e);
+        }
+
+        synchronized (compiledScripts) {
+            CompiledScript existing = compiledScripts.putIfAbsent(key, compiledScript);
+            return existing != null ? existing : compiledScript;
+        }
+    }
+
+    //null when the script can't be vectorized, that result is cached as well
+    VectorizedScript compileVectorized(String script) {
+        String key = hash(script);
+        synchronized (vectorizedScripts) {
+            Optional<VectorizedScript> vectorizedScript = vectorizedScripts.get(key);
+            if (vectorizedScript != null) {
+                return vectorizedScript.orElse(null);
+            }
+        }
+
+        VectorizedScript vectorizedScript = VectorizedScript.compile(script);
+        synchronized (vectorizedScripts) {
+            vectorizedScripts.putIfAbsent(key, Optional.ofNullable(vectorizedScript));
+        }
+        return vectorizedScript;
+    }
+
+    public ScriptEngine getEngine() {
+        ScriptEngine engine = scriptEngine;
+        if (engine == null) {
+            synchronized (this) {
+                engine = scriptEngine;
+                if (engine == null) {
+                    //creating groovy engine only once, it is shared by all controllers
+                    engine = engineFactory.get();
+                    if (engine == null) {
+                        throw new RuntimeException("Script engine not found");
+                    }
+                    if (!(engine instanceof Compilable)) {
+                        throw new RuntimeException("Script engine doesn't support compilation");
+                    }
+                    scriptEngine = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    public void clear() {
+        synchronized (compiledScripts) {
+            compiledScripts.clear();
+        }
+        synchronized (vectorizedScripts) {
+            vectorizedScripts.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (compiledScripts) {
+            return compiledScripts.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ScriptCache[size=" + size() + "/" + capacity
+                + ", hits=" + getHits()
+                + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions() + "]";
+    }
+
+    static String hash(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package Main;
+
+//script stopped by the limits of its ScriptSandbox
+public class ScriptLimitException extends RuntimeException {
+
+    public enum Limit {
+        //ran longer than the timeout
+        TIMEOUT,
+        //created an array longer than allowed, or more array elements in one run than allowed
+        ARRAY_SIZE,
+        //all sandbox threads were busy and its queue was full
+        REJECTED,
+        //script of a language the sandbox can't limit, only groovy scripts run in a sandbox
+        LANGUAGE
+    }
+
+    private final Limit limit;
+
+    public ScriptLimitException(Limit limit, String message) {
+        this(limit, message, null);
+    }
+
+    public ScriptLimitException(Limit limit, String message, Throwable cause) {
+        super(message, cause);
+        this.limit = limit;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+}
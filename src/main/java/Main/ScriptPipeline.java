@@ -0,0 +1,221 @@
+package Main;
+
+import javax.script.Bindings;
+import javax.script.SimpleBindings;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+//runs several scripts of one controller, scripts which don't depend on each other are run concurrently
+//script j depends on an earlier script i when j may read a variable i assigns, or when i may read a variable
+//j assigns (so i still sees the value from before j); scripts are grouped into levels and every script of a level
+//runs on its own copies of the variables it uses
+//scripts go through the controller like runScript does (its cache, sandbox, vectorized fast path, listeners and
+//result cache), results are published in script order only when all scripts succeed, the outcome is the same as
+//running the scripts one by one, except that two independent scripts assigning the same variable is an error
+public final class ScriptPipeline {
+
+    private final Controller controller;
+    private final List<ScriptSource> scripts = new ArrayList<>();
+    private Executor executor = ForkJoinPool.commonPool();
+
+    public ScriptPipeline(Controller controller) {
+        this.controller = controller;
+    }
+
+    public ScriptPipeline addScript(String script) {
+        scripts.add(ScriptSource.of(script));
+        return this;
+    }
+
+    //language of one of the ScriptRunners, like groovy or python
+    public ScriptPipeline addScript(String script, String language) {
+        scripts.add(ScriptSource.of(script, language));
+        return this;
+    }
+
+    //run by the runner of its extension
+    public ScriptPipeline addScriptFromFile(String fname) {
+        scripts.add(ScriptSource.fromFile(fname));
+        return this;
+    }
+
+    public ScriptPipeline useExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    //indexes of scripts grouped by level, scripts of one level can run at the same time
+    public List<List<Integer>> getLevels() {
+        return plan().levels;
+    }
+
+    public Controller run() {
+        return controller.runPipeline(scripts, this::execute);
+    }
+
+    //values the scripts assign, in script order
+    private Map<String, Object> execute() {
+        Plan plan = plan();
+
+        //a groovy engine which doesn't declare thread safety gets its scripts one by one,
+        //runners of other languages are shared by all threads and keep engines for each of them
+        Object threading = controller.getCache().getEngine().getFactory().getParameter("THREADING");
+        boolean concurrentGroovy = threading != null;
+
+        //values assigned by finished levels, later levels read them instead of the controller's
+        Map<String, Object> staged = new LinkedHashMap<>();
+        List<Map<String, Object>> outputs = new ArrayList<>(Collections.nCopies(scripts.size(), null));
+        for (List<Integer> level : plan.levels) {
+            List<CompletableFuture<Map<String, Object>>> running = new ArrayList<>();
+            for (int index : level) {
+                if (level.size() > 1 && (concurrentGroovy || !scripts.get(index).isGroovy())) {
+                    running.add(CompletableFuture.supplyAsync(() -> runIsolated(index, staged), executor));
+                }
+                else {
+                    running.add(CompletableFuture.completedFuture(runIsolated(index, staged)));
+                }
+            }
+            for (int i = 0; i < level.size(); i++) {
+                try {
+                    outputs.set(level.get(i), running.get(i).join());
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+
+            //staged in script order, so the merge doesn't depend on which script finished first
+            List<Integer> ordered = new ArrayList<>(level);
+            Collections.sort(ordered);
+            for (int index : ordered) {
+                staged.putAll(outputs.get(index));
+            }
+        }
+
+        checkConflicts(plan, outputs);
+
+        //publishing in script order, as the scripts would have done when run one by one
+        Map<String, Object> published = new LinkedHashMap<>();
+        for (Map<String, Object> output : outputs) {
+            for (String variable : output.keySet()) {
+                published.put(variable, staged.get(variable));
+            }
+        }
+        return published;
+    }
+
+    //runs a script on copies of the variables it uses and returns the ones it changed
+    private Map<String, Object> runIsolated(int index, Map<String, Object> staged) {
+        Map<String, Object> inputs = new LinkedHashMap<>();
+        Bindings bindings = new SimpleBindings(new LinkedHashMap<>());
+        ScriptSource script = scripts.get(index);
+        for (String variable : script.runner().retrieveVariables(script.text())) {
+            Object value = staged.containsKey(variable) ? staged.get(variable) : controller.readVariable(variable);
+            if (value != null) {
+                inputs.put(variable, value);
+                bindings.put(variable, value instanceof double[] values ? values.clone() : value);
+            }
+        }
+
+        try {
+            controller.evalScript(script.text(), script.runner(), bindings);
+        } catch (ScriptLimitException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Error while executing " + script.runner().getLanguage() + " script #" + (index + 1), e);
+        }
+
+        //arrays, model variables and former script variables which differ from their inputs
+        Map<String, Object> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            String variable = entry.getKey();
+            Object value = entry.getValue();
+            Object input = inputs.get(variable);
+            if (!(value instanceof double[]) && !controller.isVariable(variable)) {
+                continue;
+            }
+            boolean same = value instanceof double[] values && input instanceof double[] inputValues
+                    ? Arrays.equals(values, inputValues)
+                    : Objects.equals(value, input);
+            if (!same) {
+                changed.put(variable, value);
+            }
+        }
+        return changed;
+    }
+
+    private void checkConflicts(Plan plan, List<Map<String, Object>> outputs) {
+        for (int i = 0; i < outputs.size(); i++) {
+            for (int j = i + 1; j < outputs.size(); j++) {
+                if (plan.reachable[i].get(j)) {
+                    continue;
+                }
+                for (String variable : outputs.get(i).keySet()) {
+                    if (outputs.get(j).containsKey(variable)) {
+                        throw new RuntimeException("Write conflict on variable " + variable
+                                + " between scripts #" + (i + 1) + " and #" + (j + 1));
+                    }
+                }
+            }
+        }
+    }
+
+    private Plan plan() {
+        int count = scripts.size();
+        List<Set<String>> reads = new ArrayList<>(count);
+        List<Set<String>> writes = new ArrayList<>(count);
+        for (ScriptSource script : scripts) {
+            reads.add(script.runner().retrieveReadVariables(script.text()));
+            writes.add(script.runner().retrieveAssignedVariables(script.text()));
+        }
+
+        //edges only go forward, so script order is already a topological order
+        int[] levelOf = new int[count];
+        BitSet[] reachable = new BitSet[count];
+        for (int j = 0; j < count; j++) {
+            reachable[j] = new BitSet(count);
+        }
+        for (int j = 0; j < count; j++) {
+            for (int i = 0; i < j; i++) {
+                //read after write, and write after read: a later script's values mustn't reach an earlier one
+                if (!Collections.disjoint(writes.get(i), reads.get(j)) || !Collections.disjoint(reads.get(i), writes.get(j))) {
+                    levelOf[j] = Math.max(levelOf[j], levelOf[i] + 1);
+                    reachable[i].set(j);
+                }
+            }
+        }
+        //closing reachability backwards, successors of a script are complete when it is visited
+        for (int i = count - 1; i >= 0; i--) {
+            BitSet successors = (BitSet) reachable[i].clone();
+            for (int j = successors.nextSetBit(0); j >= 0; j = successors.nextSetBit(j + 1)) {
+                reachable[i].or(reachable[j]);
+            }
+        }
+
+        List<List<Integer>> levels = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            while (levels.size() <= levelOf[i]) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(levelOf[i]).add(i);
+        }
+        List<List<Integer>> frozen = new ArrayList<>(levels.size());
+        for (List<Integer> level : levels) {
+            frozen.add(Collections.unmodifiableList(level));
+        }
+        return new Plan(Collections.unmodifiableList(frozen), reachable);
+    }
+
+    private record Plan(List<List<Integer>> levels, BitSet[] reachable) {
+    }
+}
@@ -0,0 +1,35 @@
+package Main;
+
+import javax.script.Bindings;
+import javax.script.ScriptException;
+import java.util.List;
+import java.util.Set;
+
+//runs scripts of one language against the bindings of a controller, found by ScriptRunners by language name
+//or file extension; other runners are added through META-INF/services/Main.ScriptRunner
+//runners are shared by all controllers and threads, engines are kept warm between scripts
+public interface ScriptRunner {
+
+    //lowercase name, like groovy or python
+    String getLanguage();
+
+    //file extensions without the dot
+    List<String> getExtensions();
+
+    void run(String script, Bindings bindings) throws ScriptException;
+
+    //creates the engines up front, so the first scripts don't pay for it
+    default void warmUp() {
+    }
+
+    boolean isScriptKeyword(String token);
+
+    //identifiers assigned by a script, whole or by index
+    Set<String> retrieveAssignedVariables(String script);
+
+    //identifiers whose current value a script may use
+    Set<String> retrieveReadVariables(String script);
+
+    //identifiers a script may read or write
+    Set<String> retrieveVariables(String script);
+}
@@ -0,0 +1,90 @@
+package Main;
+
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptEngineManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+//runners by language and file extension: groovy first, then the ones of META-INF/services/Main.ScriptRunner,
+//then any other JSR-223 engine found on the class path; a language keeps the first runner registered for it
+//unless register() replaces it
+public final class ScriptRunners {
+
+    private static final GroovyScriptRunner DEFAULT = new GroovyScriptRunner();
+    private static final Map<String, ScriptRunner> BY_LANGUAGE = new ConcurrentHashMap<>();
+    private static final Map<String, ScriptRunner> BY_EXTENSION = new ConcurrentHashMap<>();
+
+    static {
+        add(DEFAULT, false);
+        for (ScriptRunner runner : ServiceLoader.load(ScriptRunner.class)) {
+            add(runner, false);
+        }
+        for (ScriptEngineFactory factory : new ScriptEngineManager().getEngineFactories()) {
+            if (!BY_LANGUAGE.containsKey(Jsr223ScriptRunner.languageOf(factory))) {
+                add(new Jsr223ScriptRunner(factory), false);
+            }
+        }
+    }
+
+    private ScriptRunners() {
+    }
+
+    //groovy, used for scripts given without a language
+    public static ScriptRunner getDefault() {
+        return DEFAULT;
+    }
+
+    public static ScriptRunner forLanguage(String language) {
+        ScriptRunner runner = BY_LANGUAGE.get(language.toLowerCase(Locale.ROOT));
+        if (runner == null) {
+            throw new RuntimeException("No script runner for language: " + language);
+        }
+        return runner;
+    }
+
+    //by the extension of the file, files with an unknown extension or none are groovy scripts
+    public static ScriptRunner forFile(String fname) {
+        int dot = fname.lastIndexOf('.');
+        int separator = Math.max(fname.lastIndexOf('/'), fname.lastIndexOf('\\'));
+        if (dot <= separator + 1) {
+            return DEFAULT;
+        }
+        return BY_EXTENSION.getOrDefault(fname.substring(dot + 1).toLowerCase(Locale.ROOT), DEFAULT);
+    }
+
+    //replaces the runner of its language and extensions
+    public static void register(ScriptRunner runner) {
+        add(runner, true);
+    }
+
+    public static List<ScriptRunner> getRunners() {
+        return new ArrayList<>(BY_LANGUAGE.values());
+    }
+
+    //creates the engines of every runner, for long-running processes which shouldn't pay for them on first use
+    public static void warmUpAll() {
+        for (ScriptRunner runner : getRunners()) {
+            runner.warmUp();
+        }
+    }
+
+    private static void add(ScriptRunner runner, boolean replace) {
+        String language = runner.getLanguage().toLowerCase(Locale.ROOT);
+        if (!replace && BY_LANGUAGE.containsKey(language)) {
+            return;
+        }
+        BY_LANGUAGE.put(language, runner);
+        for (String extension : runner.getExtensions()) {
+            if (replace) {
+                BY_EXTENSION.put(extension.toLowerCase(Locale.ROOT), runner);
+            }
+            else {
+                BY_EXTENSION.putIfAbsent(extension.toLowerCase(Locale.ROOT), runner);
+            }
+        }
+    }
+}
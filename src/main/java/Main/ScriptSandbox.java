@@ -0,0 +1,432 @@
+package Main;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.transform.ThreadInterrupt;
+import groovy.transform.TimedInterrupt;
+import org.codehaus.groovy.ast.ClassCodeExpressionTransformer;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.ArrayExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilePhase;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+import org.codehaus.groovy.jsr223.GroovyScriptEngineImpl;
+import org.codehaus.groovy.runtime.typehandling.DefaultTypeTransformation;
+
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+//limits for untrusted scripts: every script runs on one of the sandbox's own threads with a wall-clock timeout,
+//its loops and closures check for interruption (ThreadInterrupt, with TimedInterrupt as a backstop) and every
+//array it creates is checked against the length limit and the limit of array elements per run
+//scripts are compiled by the sandbox's own engine into its own cache, so limits can't be skipped by a script
+//compiled elsewhere; code called by a script (JDK or model methods) isn't interrupted
+//a script works on copies of the caller's variables, which are merged back only when it succeeds, so a script
+//that doesn't stop after its timeout (stuck in such a call) can't change them anymore; it keeps its sandbox thread
+//until it ends though, once all threads are kept like that scripts time out in the queue or are rejected when it's full
+public final class ScriptSandbox implements AutoCloseable {
+
+    private static final ScriptSandbox SHARED = new ScriptSandbox(
+            Duration.ofMillis(Long.getLong("reflectivescripting.sandbox.timeoutMillis", 10_000)),
+            Integer.getInteger("reflectivescripting.sandbox.maxArrayLength", 10_000_000),
+            Long.getLong("reflectivescripting.sandbox.maxArrayElements", 100_000_000),
+            Integer.getInteger("reflectivescripting.sandbox.threads", Runtime.getRuntime().availableProcessors()));
+
+    //how long a timed out script gets to notice its interruption before the caller stops waiting for it
+    private static final long GRACE_MILLIS = 1_000;
+    private static final ThreadLocal<Allocation> ALLOCATION = new ThreadLocal<>();
+
+    private final Duration timeout;
+    private final int maxArrayLength;
+    private final long maxArrayElements;
+    private final ThreadPoolExecutor executor;
+    private final ScriptCache cache;
+
+    //statistics
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong arrayViolations = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong stuck = new AtomicLong();
+
+    public ScriptSandbox(Duration timeout, int maxArrayLength, long maxArrayElements, int threads) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Script timeout must be positive: " + timeout);
+        }
+        if (maxArrayLength < 0 || maxArrayElements < 0) {
+            throw new IllegalArgumentException("Array limits can't be negative");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Sandbox threads count must be positive: " + threads);
+        }
+        this.timeout = timeout;
+        this.maxArrayLength = maxArrayLength;
+        this.maxArrayElements = maxArrayElements;
+
+        //platform threads, a script spinning in a loop would pin the carrier of a virtual one
+        //queue is bounded, a burst of scripts is rejected instead of piling up behind slow ones
+        AtomicLong threadIds = new AtomicLong();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4),
+                task -> Thread.ofPlatform().daemon().name("script-sandbox-" + threadIds.incrementAndGet()).unstarted(task));
+
+        //backstop is in whole seconds, TimedInterrupt can't take another unit through the customizer
+        long backstopSeconds = Math.max(1, (timeout.toMillis() + GRACE_MILLIS + 999) / 1000);
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.addCompilationCustomizers(
+                new ASTTransformationCustomizer(ThreadInterrupt.class),
+                new ASTTransformationCustomizer(Map.of("value", backstopSeconds), TimedInterrupt.class),
+                new ArraySizeCustomizer());
+        this.cache = new ScriptCache(ScriptCache.DEFAULT_CAPACITY, () -> new GroovyScriptEngineImpl(
+                new GroovyClassLoader(ScriptSandbox.class.getClassLoader(), configuration)));
+    }
+
+    //sandbox used by the server and the window, limits are set by -Dreflectivescripting.sandbox.* properties
+    public static ScriptSandbox getShared() {
+        return SHARED;
+    }
+
+    ScriptCache getCache() {
+        return cache;
+    }
+
+    //runs the script on a sandbox thread and waits for it at most for the timeout
+    Object eval(CompiledScript script, Bindings bindings) throws ScriptException {
+        IsolatedBindings isolated = new IsolatedBindings(bindings);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean started = new AtomicBoolean();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        Future<Object> future;
+        try {
+            future = executor.submit(() -> {
+                started.set(true);
+                ALLOCATION.set(new Allocation(this));
+                try {
+                    return script.eval(isolated);
+                } finally {
+                    ALLOCATION.remove();
+                    synchronized (abandoned) {
+                        finished.countDown();
+                        if (abandoned.get()) {
+                            stuck.decrementAndGet();
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new ScriptLimitException(ScriptLimitException.Limit.REJECTED,
+                    "Script was rejected, all " + executor.getMaximumPoolSize() + " sandbox threads are busy"
+                            + (stuck.get() > 0 ? ", " + stuck.get() + " of them by scripts which didn't stop" : ""), e);
+        }
+        executed.incrementAndGet();
+
+        Object result;
+        try {
+            result = future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            String outcome = stop(future, started, finished, isolated, abandoned);
+            timeouts.incrementAndGet();
+            throw new ScriptLimitException(ScriptLimitException.Limit.TIMEOUT,
+                    "Script didn't finish within " + timeout.toMillis() + " ms" + outcome, e);
+        } catch (InterruptedException e) {
+            stop(future, started, finished, isolated, abandoned);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Script was interrupted", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+        isolated.mergeInto(bindings);
+        return result;
+    }
+
+    //how the script ended up, for the message of its timeout; a script still running after the grace period
+    //is cut off from the caller's variables and keeps its thread
+    private String stop(Future<Object> future, AtomicBoolean started, CountDownLatch finished,
+                        IsolatedBindings isolated, AtomicBoolean abandoned) {
+        isolated.detach();
+        //a script still waiting in the queue won't run at all once it's cancelled
+        if (future.cancel(true) && !started.get()) {
+            return ", it was still waiting for a sandbox thread";
+        }
+        try {
+            finished.await(GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (abandoned) {
+            if (finished.getCount() == 0) {
+                return "";
+            }
+            abandoned.set(true);
+            stuck.incrementAndGet();
+            return " and didn't stop, it keeps a sandbox thread until it ends";
+        }
+    }
+
+    //limit violations are rethrown as they are, whatever the script engine wrapped them into
+    private RuntimeException unwrap(Throwable error) throws ScriptException {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ScriptLimitException limitException) {
+                return limitException;
+            }
+            if (cause instanceof TimeoutException) {
+                //TimedInterrupt fired inside the script
+                timeouts.incrementAndGet();
+                return new ScriptLimitException(ScriptLimitException.Limit.TIMEOUT,
+                        "Script didn't finish within " + timeout.toMillis() + " ms", cause);
+            }
+            if (cause == cause.getCause()) {
+                break;
+            }
+        }
+        if (error instanceof ScriptException scriptException) {
+            throw scriptException;
+        }
+        if (error instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new RuntimeException("Error while executing sandboxed script", error);
+    }
+
+    //called by the code the customizer puts around every array size of a sandboxed script,
+    //dimensions of one array are checked one by one, the elements of the whole array are counted with the last one
+    public static int checkArraySize(Object size, int dimension, int dimensions) {
+        int length = DefaultTypeTransformation.intUnbox(size);
+        Allocation allocation = ALLOCATION.get();
+        if (allocation != null) {
+            allocation.check(length, dimension, dimensions);
+        }
+        return length;
+    }
+
+    //arrays created outside of groovy code, like the ones of a vectorized script, checked as one run of a script
+    void checkArrays(int[] lengths) {
+        Allocation allocation = new Allocation(this);
+        for (int length : lengths) {
+            allocation.check(length, 0, 1);
+        }
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public int getMaxArrayLength() {
+        return maxArrayLength;
+    }
+
+    public long getMaxArrayElements() {
+        return maxArrayElements;
+    }
+
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getArrayViolations() {
+        return arrayViolations.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    //threads still running scripts which didn't stop after their timeout
+    public long getStuck() {
+        return stuck.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "ScriptSandbox[executed=" + getExecuted()
+                + ", timeouts=" + getTimeouts()
+                + ", arrayViolations=" + getArrayViolations()
+                + ", rejected=" + getRejected()
+                + ", stuck=" + getStuck() + "]";
+    }
+
+    //variables of the caller copied on first use, arrays are cloned so the script never changes the caller's ones
+    //in place; once the caller stops waiting nothing more is copied, so the caller's bindings are never touched
+    //by a script which is still running
+    private static final class IsolatedBindings extends SimpleBindings {
+
+        private final Bindings source;
+        //values of the caller, and the clones the script got of its arrays
+        private final Map<String, Object> inputs = new HashMap<>();
+        private final Map<String, double[]> clones = new HashMap<>();
+        private boolean detached = false;
+
+        IsolatedBindings(Bindings source) {
+            super(new HashMap<>());
+            this.source = source;
+        }
+
+        @Override
+        public Object get(Object key) {
+            copy(key);
+            return super.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            copy(key);
+            return super.containsKey(key);
+        }
+
+        private synchronized void copy(Object key) {
+            if (detached || !(key instanceof String name) || inputs.containsKey(name) || super.containsKey(name)) {
+                return;
+            }
+            Object value = source.get(name);
+            if (value == null && !source.containsKey(name)) {
+                return;
+            }
+            inputs.put(name, value);
+            if (value instanceof double[] values) {
+                double[] clone = values.clone();
+                clones.put(name, clone);
+                super.put(name, clone);
+            }
+            else {
+                super.put(name, value);
+            }
+        }
+
+        synchronized void detach() {
+            detached = true;
+        }
+
+        //arrays changed in place are copied back in place, everything the script assigned is put
+        void mergeInto(Bindings target) {
+            for (Map.Entry<String, Object> entry : entrySet()) {
+                String name = entry.getKey();
+                Object value = entry.getValue();
+                if (inputs.containsKey(name) && inputs.get(name) == value) {
+                    continue;
+                }
+                if (value != null && clones.get(name) == value) {
+                    double[] original = (double[]) inputs.get(name);
+                    if (!Arrays.equals(original, (double[]) value)) {
+                        System.arraycopy((double[]) value, 0, original, 0, original.length);
+                    }
+                    continue;
+                }
+                target.put(name, value);
+            }
+        }
+    }
+
+    //array elements created by one run of a script
+    private static final class Allocation {
+
+        private final ScriptSandbox sandbox;
+        private long elements = 0;
+        private long pending = 1;
+
+        Allocation(ScriptSandbox sandbox) {
+            this.sandbox = sandbox;
+        }
+
+        void check(int length, int dimension, int dimensions) {
+            if (length > sandbox.maxArrayLength) {
+                sandbox.arrayViolations.incrementAndGet();
+                throw new ScriptLimitException(ScriptLimitException.Limit.ARRAY_SIZE,
+                        "Array of " + length + " elements is longer than the limit of " + sandbox.maxArrayLength);
+            }
+            pending = dimension == 0 ? Math.max(length, 0) : pending * Math.max(length, 0);
+            if (dimension == dimensions - 1) {
+                elements += pending;
+                if (elements > sandbox.maxArrayElements) {
+                    sandbox.arrayViolations.incrementAndGet();
+                    throw new ScriptLimitException(ScriptLimitException.Limit.ARRAY_SIZE,
+                            "Script created " + elements + " array elements, the limit is " + sandbox.maxArrayElements);
+                }
+            }
+        }
+    }
+
+    //wraps every size of array creation expressions into a call of checkArraySize
+    private static final class ArraySizeCustomizer extends CompilationCustomizer {
+
+        private static final ClassNode SANDBOX = ClassHelper.make(ScriptSandbox.class);
+
+        ArraySizeCustomizer() {
+            super(CompilePhase.CANONICALIZATION);
+        }
+
+        @Override
+        public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+            new ClassCodeExpressionTransformer() {
+                @Override
+                protected SourceUnit getSourceUnit() {
+                    return source;
+                }
+
+                @Override
+                public Expression transform(Expression expression) {
+                    if (expression instanceof ClosureExpression closure) {
+                        //closure bodies aren't visited by the default transformation
+                        closure.getCode().visit(this);
+                        return closure;
+                    }
+                    if (expression instanceof ArrayExpression array && array.getSizeExpression() != null) {
+                        //sizes of omitted dimensions, like the last one of new double[n][], stay as they are
+                        List<Expression> sizes = array.getSizeExpression();
+                        int dimensions = (int) sizes.stream().filter(size -> size != null).count();
+                        List<Expression> checkedSizes = new ArrayList<>(sizes.size());
+                        int dimension = 0;
+                        for (Expression size : sizes) {
+                            if (size == null) {
+                                checkedSizes.add(null);
+                                continue;
+                            }
+                            checkedSizes.add(new StaticMethodCallExpression(SANDBOX, "checkArraySize",
+                                    new ArgumentListExpression(transform(size),
+                                            new ConstantExpression(dimension++, true), new ConstantExpression(dimensions, true))));
+                        }
+                        ArrayExpression checked = new ArrayExpression(array.getElementType(), null, checkedSizes);
+                        checked.setSourcePosition(array);
+                        return checked;
+                    }
+                    return super.transform(expression);
+                }
+            }.visitClass(classNode);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package Main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+//text of a script with the runner of its language, scripts read from files get the runner of their extension
+record ScriptSource(String text, ScriptRunner runner) {
+
+    static ScriptSource of(String text) {
+        return new ScriptSource(text, ScriptRunners.getDefault());
+    }
+
+    static ScriptSource of(String text, String language) {
+        return new ScriptSource(text, ScriptRunners.forLanguage(language));
+    }
+
+    static ScriptSource fromFile(String fname) {
+        try {
+            return new ScriptSource(Files.readString(Path.of(fname)), ScriptRunners.forFile(fname));
+        } catch (IOException e) {
+            throw new RuntimeException("Error while reading script file:\n" + fname, e);
+        }
+    }
+
+    boolean isGroovy() {
+        return runner instanceof GroovyScriptRunner;
+    }
+}
@@ -0,0 +1,183 @@
+package Main;
+
+import java.util.Arrays;
+
+//statistics of many cells (variable x year) which see one value per sample, in memory independent of the sample count
+//mean and variance by Welford's method, percentiles by the P-square algorithm of Jain and Chlamtac: five markers
+//per cell and percentile, estimates are exact for the first five samples
+//NaN makes mean and variance of its cell NaN, percentiles skip it; not thread safe
+final class StreamingStatistics {
+
+    private static final int MARKERS = 5;
+
+    private final int cells;
+    private final double[] percentiles;
+    private long count = 0;
+
+    //Welford
+    private final double[] mean;
+    private final double[] m2;
+    private final double[] min;
+    private final double[] max;
+
+    //P-square, markers of cell c and percentile p start at (c * percentiles.length + p) * MARKERS
+    private final double[] heights;
+    private final long[] positions;
+    private final double[] desired;
+    private final long[] observed;
+
+    StreamingStatistics(int cells, double[] percentiles) {
+        for (double percentile : percentiles) {
+            if (!(percentile > 0 && percentile < 1)) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 1: " + percentile);
+            }
+        }
+        this.cells = cells;
+        this.percentiles = percentiles.clone();
+        this.mean = new double[cells];
+        this.m2 = new double[cells];
+        this.min = new double[cells];
+        this.max = new double[cells];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+
+        int markers = cells * percentiles.length * MARKERS;
+        this.heights = new double[markers];
+        this.positions = new long[markers];
+        this.desired = new double[markers];
+        this.observed = new long[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            for (int p = 0; p < percentiles.length; p++) {
+                int base = (cell * percentiles.length + p) * MARKERS;
+                double quantile = percentiles[p];
+                for (int m = 0; m < MARKERS; m++) {
+                    positions[base + m] = m + 1;
+                }
+                desired[base] = 1;
+                desired[base + 1] = 1 + 2 * quantile;
+                desired[base + 2] = 1 + 4 * quantile;
+                desired[base + 3] = 3 + 2 * quantile;
+                desired[base + 4] = 5;
+            }
+        }
+    }
+
+    //values of one sample, one per cell
+    void add(double[] sample, int offset) {
+        count++;
+        for (int cell = 0; cell < cells; cell++) {
+            double value = sample[offset + cell];
+            double delta = value - mean[cell];
+            mean[cell] += delta / count;
+            m2[cell] += delta * (value - mean[cell]);
+            min[cell] = Math.min(min[cell], value);
+            max[cell] = Math.max(max[cell], value);
+            if (!Double.isNaN(value)) {
+                long seen = ++observed[cell];
+                for (int p = 0; p < percentiles.length; p++) {
+                    addToMarkers((cell * percentiles.length + p) * MARKERS, percentiles[p], value, seen);
+                }
+            }
+        }
+    }
+
+    private void addToMarkers(int base, double quantile, double value, long seen) {
+        //first five values are kept sorted as the initial marker heights
+        if (seen <= MARKERS) {
+            int i = (int) seen - 1;
+            while (i > 0 && heights[base + i - 1] > value) {
+                heights[base + i] = heights[base + i - 1];
+                i--;
+            }
+            heights[base + i] = value;
+            return;
+        }
+
+        int k;
+        if (value < heights[base]) {
+            heights[base] = value;
+            k = 0;
+        }
+        else if (value >= heights[base + 4]) {
+            heights[base + 4] = value;
+            k = 3;
+        }
+        else {
+            k = 0;
+            while (value >= heights[base + k + 1]) {
+                k++;
+            }
+        }
+        for (int m = k + 1; m < MARKERS; m++) {
+            positions[base + m]++;
+        }
+        desired[base + 1] += quantile / 2;
+        desired[base + 2] += quantile;
+        desired[base + 3] += (1 + quantile) / 2;
+        desired[base + 4] += 1;
+
+        //middle markers move by one position when they are off their desired position by one or more
+        for (int m = 1; m <= 3; m++) {
+            int i = base + m;
+            double offset = desired[i] - positions[i];
+            if ((offset >= 1 && positions[i + 1] - positions[i] > 1) || (offset <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int d = offset > 0 ? 1 : -1;
+                double height = parabolic(i, d);
+                if (heights[i - 1] < height && height < heights[i + 1]) {
+                    heights[i] = height;
+                }
+                else {
+                    heights[i] += d * (heights[i + d] - heights[i]) / (positions[i + d] - positions[i]);
+                }
+                positions[i] += d;
+            }
+        }
+    }
+
+    private double parabolic(int i, int d) {
+        double left = positions[i] - positions[i - 1];
+        double right = positions[i + 1] - positions[i];
+        double span = positions[i + 1] - positions[i - 1];
+        return heights[i] + d / span * ((left + d) * (heights[i + 1] - heights[i]) / right
+                + (right - d) * (heights[i] - heights[i - 1]) / left);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    double[] getPercentiles() {
+        return percentiles.clone();
+    }
+
+    double getMean(int cell) {
+        return count == 0 ? Double.NaN : mean[cell];
+    }
+
+    //sample variance
+    double getVariance(int cell) {
+        return count < 2 ? Double.NaN : m2[cell] / (count - 1);
+    }
+
+    double getMin(int cell) {
+        return count == 0 ? Double.NaN : min[cell];
+    }
+
+    double getMax(int cell) {
+        return count == 0 ? Double.NaN : max[cell];
+    }
+
+    double getPercentile(int cell, int percentile) {
+        long seen = observed[cell];
+        int base = (cell * percentiles.length + percentile) * MARKERS;
+        if (seen == 0) {
+            return Double.NaN;
+        }
+        if (seen <= MARKERS) {
+            //nearest rank of the few sorted values
+            int rank = (int) Math.ceil(percentiles[percentile] * seen);
+            return heights[base + Math.max(rank, 1) - 1];
+        }
+        return heights[base + 2];
+    }
+}
@@ -0,0 +1,72 @@
+package Main;
+
+import java.io.IOException;
+
+//writes result rows one by one, reusing a single row buffer for the whole export
+final class TsvWriter {
+
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    private final Appendable sink;
+    private final StringBuilder row;
+    private final boolean direct;
+
+    TsvWriter(Appendable sink) {
+        this.sink = sink;
+
+        //when sink is already a StringBuilder there is nothing to gain from the intermediate buffer
+        if (sink instanceof StringBuilder builder) {
+            this.row = builder;
+            this.direct = true;
+        }
+        else {
+            this.row = new StringBuilder(256);
+            this.direct = false;
+        }
+    }
+
+    void writeYears(String name, String[] years) throws IOException {
+        row.append(name).append('\t');
+        for (String year : years) {
+            row.append(year).append(' ');
+        }
+        endRow();
+    }
+
+    void writeValues(String name, double[] values) throws IOException {
+        row.append(name).append('\t');
+        for (double value : values) {
+            DoubleFormatter.append(row, value);
+            row.append(' ');
+            if (!direct && row.length() >= FLUSH_THRESHOLD) {
+                flush();
+            }
+        }
+        endRow();
+    }
+
+    void writeValues(String name, VariableStore store, int id) throws IOException {
+        row.append(name).append('\t');
+        int length = store.length(id);
+        for (int i = 0; i < length; i++) {
+            DoubleFormatter.append(row, store.get(id, i));
+            row.append(' ');
+            if (!direct && row.length() >= FLUSH_THRESHOLD) {
+                flush();
+            }
+        }
+        endRow();
+    }
+
+    private void endRow() throws IOException {
+        row.append('\n');
+        if (!direct) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        sink.append(row);
+        row.setLength(0);
+    }
+}
@@ -0,0 +1,63 @@
+package Main;
+
+import java.util.List;
+
+//columnar storage of variables: every variable is one contiguous block of doubles, addressed by an interned id
+public interface VariableStore {
+
+    static VariableStore onHeap() {
+        return new HeapVariableStore();
+    }
+
+    static VariableStore offHeap() {
+        return new OffHeapVariableStore();
+    }
+
+    //id of the variable, -1 if it is not stored
+    int id(String name);
+
+    String name(int id);
+
+    //names of all stored variables, in the order they were first stored
+    List<String> names();
+
+    boolean contains(String name);
+
+    int size();
+
+    int length(int id);
+
+    double get(int id, int index);
+
+    void set(int id, int index, double value);
+
+    //copies first length values into the block of the variable and returns its id
+    int put(String name, double[] values, int length);
+
+    default int put(String name, double[] values) {
+        return put(name, values, values.length);
+    }
+
+    void copyTo(int id, double[] target);
+
+    default double[] toArray(int id) {
+        double[] values = new double[length(id)];
+        copyTo(id, values);
+        return values;
+    }
+
+    default double[] toArray(String name) {
+        int id = id(name);
+        return id < 0 ? null : toArray(id);
+    }
+
+    void remove(String name);
+
+    void clear();
+
+    default void putAll(VariableStore other) {
+        for (String name : other.names()) {
+            put(name, other.toArray(other.id(name)));
+        }
+    }
+}
@@ -0,0 +1,837 @@
+package Main;
+
+import javax.script.Bindings;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//fast path for scripts made only of element-wise arithmetic over double[] variables, e.g.
+//  ZDEKS = new double[LL];
+//  for (i = 0; i < LL; i++) {
+//  ZDEKS[i] = EKS[i] / PKB[i];
+//  }
+//statements are compiled into a tree of array kernels evaluated chunk by chunk, every kernel is a plain
+//counted loop which the JIT can unroll and vectorize; anything else is left to the groovy engine
+final class VectorizedScript {
+
+    private static final int CHUNK = 1024;
+
+    private final List<Statement> statements;
+    private final String[] arrayNames;
+    private final Set<String> allocated;
+    private final boolean usesLL;
+    private final int scratchDepth;
+
+    private VectorizedScript(List<Statement> statements, String[] arrayNames, Set<String> allocated,
+                             boolean usesLL, int scratchDepth) {
+        this.statements = statements;
+        this.arrayNames = arrayNames;
+        this.allocated = allocated;
+        this.usesLL = usesLL;
+        this.scratchDepth = scratchDepth;
+    }
+
+    //returns null when the script uses anything this fast path doesn't support
+    static VectorizedScript compile(String script) {
+        try {
+            return new Parser(new Tokenizer(script).tokenize()).parseScript();
+        } catch (Unsupported e) {
+            return null;
+        }
+    }
+
+    //returns false, without touching bindings, when variables don't match the script (missing, wrong type, too short)
+    //arrays the script creates are checked against the array limits of the sandbox, if there is one
+    boolean execute(Bindings bindings, ScriptSandbox sandbox) {
+        //resolving everything up front, so fallback to groovy is still possible
+        int LL = 0;
+        if (usesLL) {
+            if (!(bindings.get("LL") instanceof Integer value) || value < 0) {
+                return false;
+            }
+            LL = value;
+        }
+
+        List<Allocation> allocations = new ArrayList<>();
+        for (Statement statement : statements) {
+            if (statement instanceof Allocation allocation) {
+                allocations.add(allocation);
+            }
+        }
+        int[] lengths = new int[allocations.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = allocations.get(i).length.resolve(LL);
+        }
+        if (sandbox != null) {
+            sandbox.checkArrays(lengths);
+        }
+
+        double[][] arrays = new double[arrayNames.length][];
+        Map<String, double[]> newArrays = new HashMap<>();
+        for (int i = 0; i < lengths.length; i++) {
+            Allocation allocation = allocations.get(i);
+            double[] array = new double[lengths[i]];
+            arrays[allocation.slot] = array;
+            newArrays.put(allocation.name, array);
+        }
+        for (int slot = 0; slot < arrayNames.length; slot++) {
+            if (arrays[slot] == null) {
+                if (!(bindings.get(arrayNames[slot]) instanceof double[] array)) {
+                    return false;
+                }
+                arrays[slot] = array;
+            }
+        }
+
+        //every array used by a loop must cover the whole range, otherwise groovy reports the error
+        for (Statement statement : statements) {
+            if (statement instanceof Loop loop) {
+                int end = loop.end.resolve(LL);
+                for (int slot : loop.slots) {
+                    if (end > arrays[slot].length) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        //executing statements in order, arrays allocated by the script are published when they are allocated
+        Frame frame = new Frame(arrays, LL, scratchDepth);
+        for (Statement statement : statements) {
+            if (statement instanceof Allocation allocation) {
+                bindings.put(allocation.name, arrays[allocation.slot]);
+            }
+            else {
+                ((Loop) statement).run(frame);
+            }
+        }
+        return true;
+    }
+
+    Set<String> getAllocatedVariables() {
+        return allocated;
+    }
+
+    //state of a single execution, compiled kernels themselves are shared between threads
+    private static final class Frame {
+
+        final double[][] arrays;
+        final double LL;
+        final double[][] scratch;
+
+        Frame(double[][] arrays, int LL, int depth) {
+            this.arrays = arrays;
+            this.LL = LL;
+            this.scratch = new double[depth + 1][CHUNK];
+        }
+    }
+
+    private interface Statement {
+    }
+
+    private record Allocation(String name, int slot, Bound length) implements Statement {
+    }
+
+    private record Loop(int start, Bound end, List<Assignment> assignments, int[] slots) implements Statement {
+
+        void run(Frame frame) {
+            int to = end.resolve((int) frame.LL);
+            //all assignments are done for one chunk before the next one, like the groovy loop does per index
+            for (int from = start; from < to; from += CHUNK) {
+                int length = Math.min(CHUNK, to - from);
+                for (Assignment assignment : assignments) {
+                    assignment.run(frame, from, length);
+                }
+            }
+        }
+    }
+
+    private record Assignment(int targetSlot, Kernel value) {
+
+        void run(Frame frame, int from, int length) {
+            double[] target = frame.arrays[targetSlot];
+            if (value instanceof ArrayRead read) {
+                System.arraycopy(frame.arrays[read.slot], from, target, from, length);
+                return;
+            }
+            double[] out = frame.scratch[0];
+            value.eval(frame, from, length, out);
+            System.arraycopy(out, 0, target, from, length);
+        }
+    }
+
+    private record Bound(int literal, boolean isLL) {
+
+        int resolve(int LL) {
+            return isLL ? LL : literal;
+        }
+    }
+
+    //kernels write values of indexes [from, from + length) into out[0, length)
+    private interface Kernel {
+
+        void eval(Frame frame, int from, int length, double[] out);
+
+        default boolean isScalar() {
+            return false;
+        }
+    }
+
+    private record Constant(double value) implements Kernel {
+
+        @Override
+        public void eval(Frame frame, int from, int length, double[] out) {
+            Arrays.fill(out, 0, length, value);
+        }
+
+        @Override
+        public boolean isScalar() {
+            return true;
+        }
+    }
+
+    private record LLValue() implements Kernel {
+
+        @Override
+        public void eval(Frame frame, int from, int length, double[] out) {
+            Arrays.fill(out, 0, length, frame.LL);
+        }
+
+        @Override
+        public boolean isScalar() {
+            return true;
+        }
+    }
+
+    private record ArrayRead(int slot) implements Kernel {
+
+        @Override
+        public void eval(Frame frame, int from, int length, double[] out) {
+            System.arraycopy(frame.arrays[slot], from, out, 0, length);
+        }
+    }
+
+    private enum Operator {
+        ADD, SUBTRACT, MULTIPLY, DIVIDE, POW, MIN, MAX
+    }
+
+    private record Binary(Operator operator, Kernel left, Kernel right, int depth) implements Kernel {
+
+        @Override
+        public void eval(Frame frame, int from, int length, double[] out) {
+            //scalar and plain array operands are read directly, without a scratch copy
+            if (right instanceof Constant constant) {
+                left.eval(frame, from, length, out);
+                applyScalar(operator, out, constant.value, length);
+            }
+            else if (right instanceof LLValue) {
+                left.eval(frame, from, length, out);
+                applyScalar(operator, out, frame.LL, length);
+            }
+            else if (right instanceof ArrayRead read) {
+                left.eval(frame, from, length, out);
+                applyArray(operator, out, frame.arrays[read.slot], from, length);
+            }
+            else {
+                double[] scratch = frame.scratch[depth];
+                left.eval(frame, from, length, out);
+                right.eval(frame, from, length, scratch);
+                applyArray(operator, out, scratch, 0, length);
+            }
+        }
+    }
+
+    private enum Function {
+        SQRT, ABS, EXP, LOG, NEGATE
+    }
+
+    private record Unary(Function function, Kernel operand) implements Kernel {
+
+        @Override
+        public void eval(Frame frame, int from, int length, double[] out) {
+            operand.eval(frame, from, length, out);
+            switch (function) {
+                case NEGATE -> {
+                    for (int i = 0; i < length; i++) {
+                        out[i] = -out[i];
+                    }
+                }
+                case SQRT -> {
+                    for (int i = 0; i < length; i++) {
+                        out[i] = Math.sqrt(out[i]);
+                    }
+                }
+                case ABS -> {
+                    for (int i = 0; i < length; i++) {
+                        out[i] = Math.abs(out[i]);
+                    }
+                }
+                case EXP -> {
+                    for (int i = 0; i < length; i++) {
+                        out[i] = Math.exp(out[i]);
+                    }
+                }
+                case LOG -> {
+                    for (int i = 0; i < length; i++) {
+                        out[i] = Math.log(out[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    //one loop per operator, the switch stays outside of the loops
+    private static void applyScalar(Operator operator, double[] out, double value, int length) {
+        switch (operator) {
+            case ADD -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] += value;
+                }
+            }
+            case SUBTRACT -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] -= value;
+                }
+            }
+            case MULTIPLY -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] *= value;
+                }
+            }
+            case DIVIDE -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] /= value;
+                }
+            }
+            case POW -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] = Math.pow(out[i], value);
+                }
+            }
+            case MIN -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] = Math.min(out[i], value);
+                }
+            }
+            case MAX -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] = Math.max(out[i], value);
+                }
+            }
+        }
+    }
+
+    private static void applyArray(Operator operator, double[] out, double[] values, int offset, int length) {
+        switch (operator) {
+            case ADD -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] += values[offset + i];
+                }
+            }
+            case SUBTRACT -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] -= values[offset + i];
+                }
+            }
+            case MULTIPLY -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] *= values[offset + i];
+                }
+            }
+            case DIVIDE -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] /= values[offset + i];
+                }
+            }
+            case POW -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] = Math.pow(out[i], values[offset + i]);
+                }
+            }
+            case MIN -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] = Math.min(out[i], values[offset + i]);
+                }
+            }
+            case MAX -> {
+                for (int i = 0; i < length; i++) {
+                    out[i] = Math.max(out[i], values[offset + i]);
+                }
+            }
+        }
+    }
+
+    //thrown whenever the script leaves the supported subset
+    private static final class Unsupported extends Exception {
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private enum TokenType {
+        IDENTIFIER, NUMBER, SYMBOL, NEWLINE, END
+    }
+
+    private record Token(TokenType type, String text) {
+
+        boolean is(String expected) {
+            return (type == TokenType.SYMBOL || type == TokenType.IDENTIFIER) && text.equals(expected);
+        }
+    }
+
+    private static final class Tokenizer {
+
+        private static final List<String> SYMBOLS = List.of(
+                "++", "--", "+=", "-=", "*=", "/=", "<=",
+                "=", "+", "-", "*", "/", "(", ")", "[", "]", "{", "}", ";", "<", ",", "."
+        );
+
+        private final String script;
+        private int position = 0;
+
+        Tokenizer(String script) {
+            this.script = script;
+        }
+
+        List<Token> tokenize() throws Unsupported {
+            List<Token> tokens = new ArrayList<>();
+            while (position < script.length()) {
+                char c = script.charAt(position);
+                if (c == '\n') {
+                    tokens.add(new Token(TokenType.NEWLINE, "\n"));
+                    position++;
+                }
+                else if (Character.isWhitespace(c)) {
+                    position++;
+                }
+                else if (script.startsWith("//", position)) {
+                    while (position < script.length() && script.charAt(position) != '\n') {
+                        position++;
+                    }
+                }
+                else if (script.startsWith("/*", position)) {
+                    int end = script.indexOf("*/", position + 2);
+                    if (end < 0) {
+                        throw new Unsupported();
+                    }
+                    //comment spanning lines still separates statements
+                    if (script.substring(position, end).indexOf('\n') >= 0) {
+                        tokens.add(new Token(TokenType.NEWLINE, "\n"));
+                    }
+                    position = end + 2;
+                }
+                else if (Character.isJavaIdentifierStart(c)) {
+                    int start = position;
+                    while (position < script.length() && Character.isJavaIdentifierPart(script.charAt(position))) {
+                        position++;
+                    }
+                    tokens.add(new Token(TokenType.IDENTIFIER, script.substring(start, position)));
+                }
+                else if (Character.isDigit(c)) {
+                    tokens.add(new Token(TokenType.NUMBER, readNumber()));
+                }
+                else {
+                    tokens.add(new Token(TokenType.SYMBOL, readSymbol()));
+                }
+            }
+            tokens.add(new Token(TokenType.END, ""));
+            return tokens;
+        }
+
+        //plain decimal numbers only, type suffixes (1d, 2G...) and hex literals go to groovy
+        private String readNumber() throws Unsupported {
+            int start = position;
+            while (position < script.length() && Character.isDigit(script.charAt(position))) {
+                position++;
+            }
+            if (position + 1 < script.length() && script.charAt(position) == '.'
+                    && Character.isDigit(script.charAt(position + 1))) {
+                position++;
+                while (position < script.length() && Character.isDigit(script.charAt(position))) {
+                    position++;
+                }
+            }
+            if (position < script.length() && (script.charAt(position) == 'e' || script.charAt(position) == 'E')) {
+                position++;
+                if (position < script.length() && (script.charAt(position) == '+' || script.charAt(position) == '-')) {
+                    position++;
+                }
+                int digitsStart = position;
+                while (position < script.length() && Character.isDigit(script.charAt(position))) {
+                    position++;
+                }
+                if (digitsStart == position) {
+                    throw new Unsupported();
+                }
+            }
+            if (position < script.length() && Character.isJavaIdentifierPart(script.charAt(position))) {
+                throw new Unsupported();
+            }
+            return script.substring(start, position);
+        }
+
+        private String readSymbol() throws Unsupported {
+            for (String symbol : SYMBOLS) {
+                if (script.startsWith(symbol, position)) {
+                    position += symbol.length();
+                    return symbol;
+                }
+            }
+            throw new Unsupported();
+        }
+    }
+
+    private static final class Parser {
+
+        private final List<Token> tokens;
+        private int position = 0;
+        private int parenthesesDepth = 0;
+
+        private final List<Statement> statements = new ArrayList<>();
+        private final Map<String, Integer> slots = new HashMap<>();
+        private final Set<String> allocated = new LinkedHashSet<>();
+        private boolean usesLL = false;
+        private int maxDepth = 0;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        VectorizedScript parseScript() throws Unsupported {
+            skipSeparators();
+            while (peek().type() != TokenType.END) {
+                if (peek().is("for")) {
+                    statements.add(parseLoop());
+                }
+                else {
+                    statements.add(parseAllocation());
+                }
+                endStatement();
+            }
+            if (statements.isEmpty()) {
+                throw new Unsupported();
+            }
+            return new VectorizedScript(List.copyOf(statements), slotNames(), allocated, usesLL, maxDepth);
+        }
+
+        private Allocation parseAllocation() throws Unsupported {
+            String name = identifier();
+            expect("=");
+            expect("new");
+            expect("double");
+            expect("[");
+            Bound length = parseBound();
+            expect("]");
+
+            //all allocations happen before any loop runs, so the name can't be used earlier in the script
+            if (slots.containsKey(name)) {
+                throw new Unsupported();
+            }
+            allocated.add(name);
+            return new Allocation(name, slot(name), length);
+        }
+
+        private Loop parseLoop() throws Unsupported {
+            expect("for");
+            expect("(");
+            parenthesesDepth++;
+            if (peek().is("int") || peek().is("def")) {
+                next();
+            }
+            String counter = identifier();
+            expect("=");
+            int start = integer();
+            expect(";");
+            expect(counter);
+            expect("<");
+            Bound end = parseBound();
+            expect(";");
+            parseIncrement(counter);
+            parenthesesDepth--;
+            expect(")");
+            skipNewlines();
+
+            List<Assignment> assignments = new ArrayList<>();
+            Set<Integer> loopSlots = new LinkedHashSet<>();
+            if (peek().is("{")) {
+                next();
+                skipSeparators();
+                while (!peek().is("}")) {
+                    assignments.add(parseAssignment(counter, loopSlots));
+                    endStatement();
+                }
+                next();
+            }
+            else {
+                assignments.add(parseAssignment(counter, loopSlots));
+            }
+            if (assignments.isEmpty()) {
+                throw new Unsupported();
+            }
+            return new Loop(start, end, List.copyOf(assignments), loopSlots.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        private void parseIncrement(String counter) throws Unsupported {
+            if (peek().is("++")) {
+                next();
+                expect(counter);
+                return;
+            }
+            expect(counter);
+            if (peek().is("++")) {
+                next();
+            }
+            else if (peek().is("+=")) {
+                next();
+                if (integer() != 1) {
+                    throw new Unsupported();
+                }
+            }
+            else {
+                throw new Unsupported();
+            }
+        }
+
+        private Assignment parseAssignment(String counter, Set<Integer> loopSlots) throws Unsupported {
+            String target = identifier();
+            int targetSlot = slot(target);
+            loopSlots.add(targetSlot);
+            expect("[");
+            expect(counter);
+            expect("]");
+
+            //value is evaluated into the scratch of depth 1 by compound assignments, so it starts one level deeper
+            Token operator = next();
+            skipNewlines();
+            Kernel value = parseExpression(counter, loopSlots, 2);
+            Kernel current = new ArrayRead(targetSlot);
+            Kernel assigned = switch (operator.text()) {
+                case "=" -> value;
+                case "+=" -> binary(Operator.ADD, current, value, 1);
+                case "-=" -> binary(Operator.SUBTRACT, current, value, 1);
+                case "*=" -> binary(Operator.MULTIPLY, current, value, 1);
+                case "/=" -> binary(Operator.DIVIDE, current, value, 1);
+                default -> throw new Unsupported();
+            };
+            if (assigned.isScalar()) {
+                throw new Unsupported();
+            }
+            return new Assignment(targetSlot, assigned);
+        }
+
+        private Kernel parseExpression(String counter, Set<Integer> loopSlots, int depth) throws Unsupported {
+            Kernel left = parseTerm(counter, loopSlots, depth);
+            while (peek().is("+") || peek().is("-")) {
+                Operator operator = next().is("+") ? Operator.ADD : Operator.SUBTRACT;
+                skipNewlines();
+                left = binary(operator, left, parseTerm(counter, loopSlots, depth + 1), depth);
+            }
+            return left;
+        }
+
+        private Kernel parseTerm(String counter, Set<Integer> loopSlots, int depth) throws Unsupported {
+            Kernel left = parseUnary(counter, loopSlots, depth);
+            while (peek().is("*") || peek().is("/")) {
+                Operator operator = next().is("*") ? Operator.MULTIPLY : Operator.DIVIDE;
+                skipNewlines();
+                left = binary(operator, left, parseUnary(counter, loopSlots, depth + 1), depth);
+            }
+            return left;
+        }
+
+        private Kernel parseUnary(String counter, Set<Integer> loopSlots, int depth) throws Unsupported {
+            if (peek().is("-")) {
+                next();
+                Kernel operand = parseUnary(counter, loopSlots, depth);
+                //negated literal zero is still positive zero for groovy integers and decimals
+                if (operand instanceof Constant constant) {
+                    return new Constant(constant.value() == 0 ? 0.0 : -constant.value());
+                }
+                if (operand.isScalar()) {
+                    throw new Unsupported();
+                }
+                return new Unary(Function.NEGATE, operand);
+            }
+            if (peek().is("+")) {
+                next();
+                return parseUnary(counter, loopSlots, depth);
+            }
+            return parsePrimary(counter, loopSlots, depth);
+        }
+
+        private Kernel parsePrimary(String counter, Set<Integer> loopSlots, int depth) throws Unsupported {
+            Token token = next();
+            if (token.type() == TokenType.NUMBER) {
+                return new Constant(Double.parseDouble(token.text()));
+            }
+            if (token.is("(")) {
+                parenthesesDepth++;
+                skipNewlines();
+                Kernel inner = parseExpression(counter, loopSlots, depth);
+                parenthesesDepth--;
+                expect(")");
+                return inner;
+            }
+            if (token.is("LL")) {
+                usesLL = true;
+                return new LLValue();
+            }
+            if (token.is("Math")) {
+                return parseFunction(counter, loopSlots, depth);
+            }
+            if (token.type() == TokenType.IDENTIFIER && !token.text().equals(counter)) {
+                int slot = slot(token.text());
+                loopSlots.add(slot);
+                expect("[");
+                expect(counter);
+                expect("]");
+                return new ArrayRead(slot);
+            }
+            throw new Unsupported();
+        }
+
+        private Kernel parseFunction(String counter, Set<Integer> loopSlots, int depth) throws Unsupported {
+            expect(".");
+            String name = identifier();
+            expect("(");
+            parenthesesDepth++;
+            skipNewlines();
+            Kernel first = parseExpression(counter, loopSlots, depth);
+            Kernel result;
+            if (peek().is(",")) {
+                next();
+                skipNewlines();
+                Kernel second = parseExpression(counter, loopSlots, depth + 1);
+                Operator operator = switch (name) {
+                    case "pow" -> Operator.POW;
+                    case "min" -> Operator.MIN;
+                    case "max" -> Operator.MAX;
+                    default -> throw new Unsupported();
+                };
+                result = binary(operator, first, second, depth);
+            }
+            else {
+                Function function = switch (name) {
+                    case "sqrt" -> Function.SQRT;
+                    case "abs" -> Function.ABS;
+                    case "exp" -> Function.EXP;
+                    case "log" -> Function.LOG;
+                    default -> throw new Unsupported();
+                };
+                if (first.isScalar()) {
+                    throw new Unsupported();
+                }
+                result = new Unary(function, first);
+            }
+            parenthesesDepth--;
+            expect(")");
+            return result;
+        }
+
+        //operations on two scalars follow groovy number rules (integer and decimal arithmetic), those go to groovy
+        private Kernel binary(Operator operator, Kernel left, Kernel right, int depth) throws Unsupported {
+            if (left.isScalar() && right.isScalar()) {
+                throw new Unsupported();
+            }
+            maxDepth = Math.max(maxDepth, depth);
+            return new Binary(operator, left, right, depth);
+        }
+
+        private Bound parseBound() throws Unsupported {
+            if (peek().is("LL")) {
+                next();
+                usesLL = true;
+                return new Bound(0, true);
+            }
+            return new Bound(integer(), false);
+        }
+
+        private int integer() throws Unsupported {
+            Token token = next();
+            if (token.type() != TokenType.NUMBER) {
+                throw new Unsupported();
+            }
+            try {
+                return Integer.parseInt(token.text());
+            } catch (NumberFormatException e) {
+                throw new Unsupported();
+            }
+        }
+
+        private String identifier() throws Unsupported {
+            Token token = next();
+            if (token.type() != TokenType.IDENTIFIER || token.is("LL")) {
+                throw new Unsupported();
+            }
+            return token.text();
+        }
+
+        private int slot(String name) throws Unsupported {
+            if (name.equals("LL") || Controller.isScriptKeyword(name)) {
+                throw new Unsupported();
+            }
+            return slots.computeIfAbsent(name, key -> slots.size());
+        }
+
+        private String[] slotNames() {
+            String[] names = new String[slots.size()];
+            for (Map.Entry<String, Integer> slot : slots.entrySet()) {
+                names[slot.getValue()] = slot.getKey();
+            }
+            return names;
+        }
+
+        private void expect(String expected) throws Unsupported {
+            if (parenthesesDepth > 0) {
+                skipNewlines();
+            }
+            if (!next().is(expected)) {
+                throw new Unsupported();
+            }
+        }
+
+        private Token next() {
+            if (parenthesesDepth > 0) {
+                skipNewlines();
+            }
+            Token token = tokens.get(position);
+            if (token.type() != TokenType.END) {
+                position++;
+            }
+            return token;
+        }
+
+        private Token peek() {
+            if (parenthesesDepth > 0) {
+                skipNewlines();
+            }
+            return tokens.get(position);
+        }
+
+        private void skipNewlines() {
+            while (tokens.get(position).type() == TokenType.NEWLINE) {
+                position++;
+            }
+        }
+
+        private void skipSeparators() {
+            while (tokens.get(position).type() == TokenType.NEWLINE || tokens.get(position).is(";")) {
+                position++;
+            }
+        }
+
+        //statement must end with a newline, semicolon, closing brace or the end of the script
+        private void endStatement() throws Unsupported {
+            Token token = tokens.get(position);
+            if (token.type() != TokenType.NEWLINE && !token.is(";") && !token.is("}") && token.type() != TokenType.END) {
+                throw new Unsupported();
+            }
+            skipSeparators();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package Main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//a chunked run carries the lag years over, so it has to give the values of one run over all years
+class ChunkedRunsTest {
+
+    @TempDir
+    Path directory;
+
+    private String data() throws IOException {
+        Path data = directory.resolve("data.txt");
+        Files.writeString(data, "LATA 2015 2016 2017 2018 2019 2020\ntwKI 1.03\ntwKS 1.04 1.05 1.06\nKI 1023752.2\nKS 315397\n");
+        return data.toString();
+    }
+
+    private static void assertSameAsOneRun(Results expected, List<Results> chunks) {
+        List<String> years = new ArrayList<>();
+        for (Results chunk : chunks) {
+            years.addAll(Arrays.asList(chunk.getYears()));
+        }
+        assertEquals(Arrays.asList(expected.getYears()), years);
+
+        for (String variable : List.of("twKI", "twKS", "KI", "KS", "PKB", "EKS")) {
+            double[] joined = new double[0];
+            for (Results chunk : chunks) {
+                double[] values = chunk.get(variable);
+                int length = joined.length;
+                joined = Arrays.copyOf(joined, length + values.length);
+                System.arraycopy(values, 0, joined, length, values.length);
+            }
+            assertArrayEquals(expected.get(variable), joined, variable);
+        }
+    }
+
+    @Test
+    void givesTheValuesOfOneRunForEveryChunkSize() throws IOException {
+        String data = data();
+        Results expected = new Controller("Models.GrowthModel").readDataFrom(data).runModel().getResults();
+        for (int chunkYears = 1; chunkYears <= 7; chunkYears++) {
+            List<Results> chunks = new ArrayList<>();
+            new Controller("Models.GrowthModel").runModelInChunks(data, chunkYears, chunks::add);
+            assertEquals((6 + chunkYears - 1) / chunkYears, chunks.size());
+            assertSameAsOneRun(expected, chunks);
+        }
+    }
+
+    @Test
+    void chunksOnlyTheYearWindow() throws IOException {
+        String data = data();
+        Results expected = new Controller("Models.GrowthModel").useYearWindow("2016", "2019").readDataFrom(data).runModel().getResults();
+        assertEquals(List.of("2016", "2017", "2018", "2019"), Arrays.asList(expected.getYears()));
+
+        List<Results> chunks = new ArrayList<>();
+        new Controller("Models.GrowthModel").useYearWindow("2016", "2019").runModelInChunks(data, 3, chunks::add);
+        assertSameAsOneRun(expected, chunks);
+    }
+
+    @Test
+    void rejectsModelsWhichArentChunkable() throws IOException {
+        String data = data();
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> new Controller("Models.DependentModel").runModelInChunks(data, 2, results -> { }));
+        assertEquals("Model Models.DependentModel can't be run in chunks, it isn't @Chunkable", error.getMessage());
+    }
+}
@@ -0,0 +1,109 @@
+package Main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//the parser reads numbers from bytes on its own, it has to give the same doubles as Double.parseDouble
+//and the same variables as the line-by-line reading it replaced
+class DataFileParserTest {
+
+    @TempDir
+    Path directory;
+
+    //reading of the controller before the parser: split on whitespace, missing values carry the last one forward
+    private static Map<String, double[]> readLineByLine(String content, List<String> years) {
+        int LL = 0;
+        Map<String, double[]> variables = new LinkedHashMap<>();
+        for (String line : content.split("\r?\n")) {
+            String[] tokens = line.split("\\s+");
+            if (tokens[0].equals("LATA")) {
+                LL = tokens.length - 1;
+                years.clear();
+                years.addAll(Arrays.asList(tokens).subList(1, tokens.length));
+            }
+            else {
+                double[] values = new double[LL];
+                for (int i = 0; i < LL; i++) {
+                    if (i + 1 < tokens.length) {
+                        values[i] = Double.parseDouble(tokens[i + 1]);
+                    }
+                    else if (i > 0) {
+                        values[i] = values[i - 1];
+                    }
+                }
+                variables.put(tokens[0], values);
+            }
+        }
+        return variables;
+    }
+
+    private static String randomNumber(SplittableRandom random) {
+        return switch (random.nextInt(8)) {
+            case 0 -> Double.toString(random.nextDouble() * 1e6);
+            case 1 -> Long.toString(random.nextLong(-1_000_000_000L, 1_000_000_000L));
+            case 2 -> String.format(Locale.ROOT, "%.3f", random.nextDouble() * 100);
+            case 3 -> Double.toString(Double.longBitsToDouble(random.nextLong() & 0x7fffffffffffffffL));
+            case 4 -> random.nextInt(100) + "e" + random.nextInt(-30, 30);
+            case 5 -> "0.000" + random.nextInt(1_000_000) + "123456789123";
+            case 6 -> "-" + random.nextInt(1000) + "." + random.nextInt(1_000_000);
+            default -> "1" + "0".repeat(random.nextInt(25)) + ".5";
+        };
+    }
+
+    @Test
+    void parsesRandomFilesLikeDoubleParseDouble() throws IOException {
+        SplittableRandom random = new SplittableRandom(7);
+        Path file = directory.resolve("data.txt");
+        for (int n = 0; n < 500; n++) {
+            int LL = random.nextInt(1, 30);
+            StringBuilder content = new StringBuilder("LATA");
+            for (int i = 0; i < LL; i++) {
+                content.append(random.nextBoolean() ? " " : "\t").append(2000 + i);
+            }
+            String newline = random.nextBoolean() ? "\n" : "\r\n";
+            content.append(newline);
+            for (int variable = 0; variable < 60; variable++) {
+                content.append("V").append(variable);
+                int count = random.nextInt(0, LL + 3);
+                for (int i = 0; i < count; i++) {
+                    content.append(random.nextBoolean() ? " " : "\t").append(randomNumber(random));
+                }
+                content.append(newline);
+            }
+            Files.writeString(file, content);
+
+            List<String> years = new ArrayList<>();
+            Map<String, double[]> expected = readLineByLine(content.toString(), years);
+            DataFile parsed = DataFileParser.parse(file);
+            assertArrayEquals(years.toArray(), parsed.getYears());
+            assertEquals(expected.keySet(), Set.copyOf(parsed.getVariableNames()));
+            for (Map.Entry<String, double[]> variable : expected.entrySet()) {
+                assertArrayEquals(variable.getValue(), parsed.get(variable.getKey()), variable.getKey() + " of file #" + n);
+            }
+        }
+    }
+
+    @Test
+    void reportsMalformedNumbers() throws IOException {
+        Path file = directory.resolve("malformed.txt");
+        Files.writeString(file, "LATA 1 2\nA 1 2\nB 3 x4\n");
+        DataParseException error = assertThrows(DataParseException.class, () -> DataFileParser.parse(file));
+        assertEquals(3, error.getLine());
+    }
+}
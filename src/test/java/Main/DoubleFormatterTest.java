@@ -0,0 +1,46 @@
+package Main;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//the formatter replaces Double.toString in the TSV export, so it has to give exactly the same text
+class DoubleFormatterTest {
+
+    private static String format(double value) {
+        StringBuilder out = new StringBuilder();
+        DoubleFormatter.append(out, value);
+        return out.toString();
+    }
+
+    @Test
+    void formatsSpecialValuesLikeDoubleToString() {
+        double[] values = {0.0, -0.0, 1.0, -1.0, 0.1, 0.3, 1e-3, 1e-5, 1e7, 9999999.999999998, 0.0009999999999999998,
+                123456789.0, 1023752.2, 1118681.6702494002, Double.MIN_VALUE, Double.MAX_VALUE, Double.MIN_NORMAL,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double value : values) {
+            assertEquals(Double.toString(value), format(value));
+        }
+    }
+
+    @Test
+    void formatsRandomValuesLikeDoubleToString() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 2_000_000; i++) {
+            double value = switch (i % 5) {
+                case 0 -> random.nextDouble() * Math.pow(10, random.nextInt(-4, 8));
+                case 1 -> Math.round(random.nextDouble() * 1e6) / Math.pow(10, random.nextInt(0, 8));
+                case 2 -> Double.longBitsToDouble(random.nextLong());
+                case 3 -> random.nextInt(1, 1_000_000) * 1.03 * 1.04;
+                default -> -random.nextDouble() * 1e6;
+            };
+            String expected = Double.toString(value);
+            String formatted = format(value);
+            if (!expected.equals(formatted)) {
+                assertEquals(expected, formatted, "bits " + Long.toHexString(Double.doubleToRawLongBits(value)));
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package Main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalRunsTest {
+
+    private static final String READ_X = "SX = new double[LL]\nfor (i = 0; i < LL; i++) { SX[i] = X[i] + 1 }";
+    private static final String READ_Y = "SY = new double[LL]\nfor (i = 0; i < LL; i++) { SY[i] = Y[i] * 3 }";
+
+    @TempDir
+    Path directory;
+
+    private String data(String content) throws IOException {
+        Path data = directory.resolve("data.txt");
+        Files.writeString(data, content);
+        return data.toString();
+    }
+
+    private static String run(Controller controller, String data) {
+        return controller.readDataFrom(data).runModel().runScript(READ_X).runScript(READ_Y).getResultsAsTsv();
+    }
+
+    private void assertRun(Controller incremental, String content, long skippedModelRuns, long skippedScripts) throws IOException {
+        String data = data(content);
+        assertEquals(run(new Controller("Models.DependentModel"), data), run(incremental, data));
+        assertEquals(skippedModelRuns, incremental.getSkippedModelRuns());
+        assertEquals(skippedScripts, incremental.getSkippedScripts());
+    }
+
+    @Test
+    void skipsWhatDidntChangeAndGivesTheResultsOfFullRuns() throws IOException {
+        Controller incremental = new Controller("Models.DependentModel").useIncrementalRuns(true);
+        assertRun(incremental, "LATA 1 2\nA 1 2\nB 3 4\nC 5 6\n", 0, 0);
+        //same data, nothing runs
+        assertRun(incremental, "LATA 1 2\nA 1 2\nB 3 4\nC 5 6\n", 1, 2);
+        //no declared field depends on C
+        assertRun(incremental, "LATA 1 2\nA 1 2\nB 3 4\nC 7 7\n", 2, 4);
+        //only Y changes, so only the script reading it runs
+        assertRun(incremental, "LATA 1 2\nA 1 2\nB 9 9\nC 7 7\n", 2, 5);
+        assertRun(incremental, "LATA 1 2\nA 0 2\nB 9 9\nC 7 7\n", 2, 6);
+        //other years, everything runs again
+        assertRun(incremental, "LATA 1 2 3\nA 0 2\nB 9 9\nC 7 7\n", 2, 6);
+    }
+
+    @Test
+    void failsWhenRunChangesAnUndeclaredField() throws IOException {
+        String data = data("LATA 1 2\nA 1 2\nC 5 6\n");
+        new Controller("Models.PartiallyDependentModel").readDataFrom(data).runModel();
+
+        Controller incremental = new Controller("Models.PartiallyDependentModel").useIncrementalRuns(true).readDataFrom(data);
+        RuntimeException error = assertThrows(RuntimeException.class, incremental::runModel);
+        assertTrue(error.getMessage().startsWith("Field C of model Models.PartiallyDependentModel was computed by run() but has no @DependsOn"),
+                error.getMessage());
+    }
+
+    @Test
+    void checksDeclaredNamesOnlyForIncrementalRuns() throws IOException {
+        String data = data("LATA 1 2\nA 1 2\n");
+        Controller controller = new Controller("Models.UnknownDependencyModel").readDataFrom(data).runModel();
+        assertEquals(1, controller.getResults().get("B")[0]);
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> new Controller("Models.UnknownDependencyModel").useIncrementalRuns(true));
+        assertEquals("Unknown variable Q in @DependsOn of field B", error.getMessage());
+    }
+}
@@ -0,0 +1,87 @@
+package Main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ScriptPipelineTest {
+
+    @TempDir
+    Path directory;
+
+    private Controller controller() throws IOException {
+        Path data = directory.resolve("data.txt");
+        Files.writeString(data, "LATA 2015 2016 2017 2018\ntwKI 1.03\ntwKS 1.04 1.05\nKI 1023752.2\nKS 315397\n");
+        return new Controller("Models.GrowthModel").readDataFrom(data.toString()).runModel();
+    }
+
+    @Test
+    void groupsIndependentScriptsIntoOneLevel() throws IOException {
+        ScriptPipeline pipeline = new ScriptPipeline(controller())
+                .addScript("A = new double[LL]; A[0] = KI[0] * 2")
+                .addScript("B = new double[LL]; B[0] = KS[0] * 2")
+                .addScript("C = new double[LL]; C[0] = A[0] + B[0]");
+        assertEquals(List.of(List.of(0, 1), List.of(2)), pipeline.getLevels());
+    }
+
+    @Test
+    void keepsReadsBeforeLaterWrites() throws IOException {
+        Controller controller = controller().runScript("X = new double[LL]; X[0] = 5");
+        ScriptPipeline pipeline = new ScriptPipeline(controller)
+                .addScript("B = new double[LL]; B[0] = X[0] + 1")
+                .addScript("X = new double[LL]; X[0] = 100");
+        //no variable goes from the first script to the second, the second still has to wait
+        assertEquals(List.of(List.of(0), List.of(1)), pipeline.getLevels());
+        pipeline.run();
+
+        Results results = controller.getResults();
+        assertEquals(6, results.get("B")[0]);
+        assertEquals(100, results.get("X")[0]);
+    }
+
+    @Test
+    void ordersScriptsReadingWhatTheyAssign() throws IOException {
+        Controller controller = controller();
+        ScriptPipeline pipeline = new ScriptPipeline(controller)
+                .addScript("Y = new double[LL]; Y[0] = 2")
+                .addScript("Y = Y; Y[0] = Y[0] + 1");
+        assertEquals(List.of(List.of(0), List.of(1)), pipeline.getLevels());
+        pipeline.run();
+        assertEquals(3, controller.getResults().get("Y")[0]);
+    }
+
+    @Test
+    void rejectsIndependentScriptsAssigningOneVariable() throws IOException {
+        Controller controller = controller();
+        ScriptPipeline pipeline = new ScriptPipeline(controller)
+                .addScript("Z = new double[LL]")
+                .addScript("Z = KI.clone()");
+        assertEquals(List.of(List.of(0, 1)), pipeline.getLevels());
+        RuntimeException error = assertThrows(RuntimeException.class, pipeline::run);
+        assertEquals("Write conflict on variable Z between scripts #1 and #2", error.getMessage());
+    }
+
+    @Test
+    void givesTheResultsOfSequentialRuns() throws IOException {
+        List<String> scripts = List.of(
+                "A = new double[LL]; for (i = 0; i < LL; i++) { A[i] = KI[i] / KS[i] }",
+                "B = new double[LL]; for (i = 0; i < LL; i++) { B[i] = PKB[i] - EKS[i] }",
+                "KS[0] = KS[0] + 1; C = new double[LL]; for (i = 0; i < LL; i++) { C[i] = A[i] * B[i] }",
+                "D = new double[LL]; for (i = 0; i < LL; i++) { D[i] = KS[i] + C[i] }",
+                "A[1] = 0");
+        Controller sequential = controller();
+        ScriptPipeline pipeline = new ScriptPipeline(controller());
+        for (String script : scripts) {
+            sequential.runScript(script);
+            pipeline.addScript(script);
+        }
+        assertEquals(sequential.getResultsAsTsv(), pipeline.run().getResultsAsTsv());
+    }
+}
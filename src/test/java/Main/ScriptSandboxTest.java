@@ -0,0 +1,91 @@
+package Main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScriptSandboxTest {
+
+    @TempDir
+    Path directory;
+
+    private Controller controller(ScriptSandbox sandbox) throws IOException {
+        Path data = directory.resolve("data.txt");
+        Files.writeString(data, "LATA 2015 2016 2017 2018\ntwKI 1.03\ntwKS 1.04 1.05\nKI 1023752.2\nKS 315397\n");
+        return new Controller("Models.GrowthModel").useSandbox(sandbox).readDataFrom(data.toString()).runModel();
+    }
+
+    //library call a script can't be stopped in, it ignores interrupts like long running library code does
+    public static final class Spinner {
+
+        public static void spin(long millis) {
+            long end = System.nanoTime() + millis * 1_000_000;
+            while (System.nanoTime() < end) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    @Test
+    void limitsArraysOfVectorizedScripts() throws IOException {
+        try (ScriptSandbox sandbox = new ScriptSandbox(Duration.ofSeconds(5), 10, 1000, 1)) {
+            Controller controller = controller(sandbox).useVectorizedScripts(true);
+            ScriptLimitException error = assertThrows(ScriptLimitException.class,
+                    () -> controller.runScript("X = new double[50000000]\nfor (i = 0; i < LL; i++) { X[i] = KI[i] }"));
+            assertEquals(ScriptLimitException.Limit.ARRAY_SIZE, error.getLimit());
+            assertEquals(1, sandbox.getArrayViolations());
+            assertNull(controller.getResults().get("X"));
+
+            controller.runScript("X = new double[LL]\nfor (i = 0; i < LL; i++) { X[i] = KI[i] * 2 }");
+            assertEquals(2 * controller.getResults().get("KI")[0], controller.getResults().get("X")[0]);
+        }
+    }
+
+    @Test
+    void keepsScriptsWhichDontStopAwayFromVariables() throws IOException, InterruptedException {
+        try (ScriptSandbox sandbox = new ScriptSandbox(Duration.ofMillis(200), 1000, 100_000, 1)) {
+            Controller controller = controller(sandbox);
+            double[] KI = controller.getResults().get("KI");
+
+            ScriptLimitException error = assertThrows(ScriptLimitException.class, () -> controller.runScript(
+                    "KI[0] = -1; Main.ScriptSandboxTest.Spinner.spin(2500); KI[1] = -1; Z = new double[LL]"));
+            assertEquals(ScriptLimitException.Limit.TIMEOUT, error.getLimit());
+            assertTrue(error.getMessage().contains("didn't stop"), error.getMessage());
+            assertEquals(1, sandbox.getStuck());
+
+            //the only sandbox thread is kept by the script
+            error = assertThrows(ScriptLimitException.class, () -> controller.runScript("Y = new double[LL]"));
+            assertEquals(ScriptLimitException.Limit.TIMEOUT, error.getLimit());
+            assertTrue(error.getMessage().endsWith("it was still waiting for a sandbox thread"), error.getMessage());
+
+            for (int i = 0; i < 100 && sandbox.getStuck() > 0; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, sandbox.getStuck());
+            assertArrayEquals(KI, controller.getResults().get("KI"));
+            assertNull(controller.getResults().get("Z"));
+            assertNull(controller.getResults().get("Y"));
+        }
+    }
+
+    @Test
+    void mergesVariablesOfScriptsWhichSucceed() throws IOException {
+        try (ScriptSandbox sandbox = new ScriptSandbox(Duration.ofSeconds(5), 1000, 100_000, 1)) {
+            Controller controller = controller(sandbox);
+            controller.runScript("KI[0] = -1; Y = new double[LL]; Y[1] = KS[1]");
+            Results results = controller.getResults();
+            assertEquals(-1, results.get("KI")[0]);
+            assertEquals(results.get("KS")[1], results.get("Y")[1]);
+        }
+    }
+}
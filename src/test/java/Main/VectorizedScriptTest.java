@@ -0,0 +1,152 @@
+package Main;
+
+import org.junit.jupiter.api.Test;
+
+import javax.script.Bindings;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//the fast path has to give exactly the doubles groovy gives for the same script, NaN and signed zeros included
+class VectorizedScriptTest {
+
+    private static final ScriptCache GROOVY = new ScriptCache(16);
+    private static final List<String> INPUTS = List.of("A", "B", "C");
+
+    private static Bindings randomInputs(SplittableRandom random, int LL) {
+        Bindings bindings = new SimpleBindings(new HashMap<>());
+        bindings.put("LL", LL);
+        for (String name : INPUTS) {
+            double[] values = new double[LL];
+            for (int i = 0; i < LL; i++) {
+                values[i] = switch (random.nextInt(6)) {
+                    case 0 -> 0.0;
+                    case 1 -> -random.nextDouble() * 100;
+                    case 2 -> random.nextInt(-5, 5);
+                    default -> random.nextDouble() * 1e4;
+                };
+            }
+            bindings.put(name, values);
+        }
+        return bindings;
+    }
+
+    private static Bindings copy(Bindings bindings) {
+        Bindings copy = new SimpleBindings(new HashMap<>());
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue() instanceof double[] values ? values.clone() : entry.getValue());
+        }
+        return copy;
+    }
+
+    private static void assertSameAsGroovy(String script, Bindings inputs) throws ScriptException {
+        VectorizedScript vectorized = VectorizedScript.compile(script);
+        assertNotNull(vectorized, () -> "not vectorized:\n" + script);
+
+        Bindings expected = copy(inputs);
+        GROOVY.compile(script).eval(expected);
+        Bindings actual = copy(inputs);
+        assertTrue(vectorized.execute(actual, null), () -> "variables didn't fit:\n" + script);
+
+        for (Map.Entry<String, Object> entry : expected.entrySet()) {
+            if (entry.getValue() instanceof double[] values) {
+                assertArrayEquals(values, (double[]) actual.get(entry.getKey()), () -> entry.getKey() + " of:\n" + script);
+            }
+        }
+    }
+
+    @Test
+    void matchesGroovyOnHandWrittenScripts() throws ScriptException {
+        List<String> scripts = List.of(
+                "X = new double[LL]\nfor (i = 0; i < LL; i++) {\nX[i] = A[i] / B[i]\n}",
+                "X = new double[LL]; for (int i = 0; i < LL; i++) { X[i] = A[i] * 2 + 1.5 * B[i] - C[i] / 3 }",
+                "X = new double[LL]\nfor (i = 0; i < LL; i++) X[i] = -(A[i] - B[i]) * -0.25",
+                "X = new double[LL]\nfor (i = 0; i < LL; i++) { X[i] = Math.sqrt(Math.abs(A[i])) + Math.exp(-B[i] / 1000) }",
+                "X = new double[LL]\nfor (i = 0; i < LL; i++) { X[i] = Math.log(A[i]) + Math.pow(B[i], 0.5) }",
+                "X = new double[LL]\nfor (i = 0; i < LL; i++) { X[i] = Math.min(A[i], 10) + Math.max(0, B[i] - C[i]) }",
+                "X = new double[LL]\nY = new double[LL]\nfor (i = 0; i < LL; i++) {\nX[i] = A[i] + LL\nY[i] = X[i] * X[i]\n}",
+                "for (i = 0; i < LL; i++) { A[i] += B[i]; B[i] -= C[i]; C[i] *= 2; A[i] /= 7 }",
+                "X = new double[LL]\nfor (i = 2; i < 5; i++) { X[i] = A[i] * 0 }\nfor (i = 0; i < LL; i += 1) { B[i] = X[i] - A[i] }");
+        SplittableRandom random = new SplittableRandom(3);
+        for (String script : scripts) {
+            //longer than a chunk of the kernels, so chunk boundaries are covered too
+            assertSameAsGroovy(script, randomInputs(random, 2500));
+        }
+    }
+
+    //random expression over the inputs, never made only of constants (those follow groovy number rules)
+    private static String expression(SplittableRandom random, int depth) {
+        int choice = depth <= 0 ? random.nextInt(2) : random.nextInt(9);
+        return switch (choice) {
+            case 0, 1 -> INPUTS.get(random.nextInt(INPUTS.size())) + "[i]";
+            //with a space, "--" is a decrement for groovy
+            case 2 -> "- " + expression(random, depth - 1);
+            case 3 -> "(" + operand(random, depth - 1) + " " + List.of("+", "-", "*", "/").get(random.nextInt(4))
+                    + " " + expression(random, depth - 1) + ")";
+            case 4 -> "Math." + List.of("sqrt", "abs", "exp", "log").get(random.nextInt(4))
+                    + "(" + expression(random, depth - 1) + ")";
+            case 5 -> "Math." + List.of("pow", "min", "max").get(random.nextInt(3))
+                    + "(" + expression(random, depth - 1) + ", " + operand(random, depth - 1) + ")";
+            //in parentheses, so precedence can't put two constants together
+            default -> "(" + expression(random, depth - 1) + " " + List.of("+", "-", "*", "/").get(random.nextInt(4))
+                    + " " + operand(random, depth - 1) + ")";
+        };
+    }
+
+    private static String operand(SplittableRandom random, int depth) {
+        return switch (random.nextInt(4)) {
+            case 0 -> Integer.toString(random.nextInt(0, 10));
+            case 1 -> random.nextInt(0, 100) + "." + random.nextInt(1, 100);
+            default -> expression(random, depth);
+        };
+    }
+
+    @Test
+    void matchesGroovyOnRandomScripts() throws ScriptException {
+        SplittableRandom random = new SplittableRandom(11);
+        for (int n = 0; n < 150; n++) {
+            String script = "X = new double[LL]\nfor (i = 0; i < LL; i++) {\nX[i] = " + expression(random, 4)
+                    + "\nA[i] " + List.of("=", "+=", "-=", "*=", "/=").get(random.nextInt(5)) + " " + expression(random, 2)
+                    + "\n}";
+            assertSameAsGroovy(script, randomInputs(random, random.nextInt(1, 1500)));
+        }
+    }
+
+    @Test
+    void leavesOtherScriptsToGroovy() {
+        assertNull(VectorizedScript.compile("X = new double[LL]\nfor (i = 1; i < LL; i++) { X[i] = X[i - 1] + A[i] }"));
+        assertNull(VectorizedScript.compile("X = new double[LL]\nfor (i = 0; i < LL; i++) { X[i] = 1 + 2 }"));
+        assertNull(VectorizedScript.compile("for (i = 0; i < LL; i++) { if (A[i] > 0) { X[i] = A[i] } }"));
+        assertNull(VectorizedScript.compile("X = new double[LL]\nfor (i = 0; i < LL; i++) { X[i] = --A[i] }"));
+        assertNull(VectorizedScript.compile("println A"));
+    }
+
+    @Test
+    void leavesBindingsUntouchedWhenVariablesDontFit() {
+        VectorizedScript script = VectorizedScript.compile("X = new double[LL]\nfor (i = 0; i < LL; i++) { X[i] = A[i] + D[i] }");
+        assertNotNull(script);
+        Bindings bindings = randomInputs(new SplittableRandom(5), 10);
+        assertFalse(script.execute(bindings, null));
+        assertNull(bindings.get("X"));
+
+        bindings.put("D", new double[5]);
+        assertFalse(script.execute(bindings, null));
+        assertNull(bindings.get("X"));
+
+        bindings.put("D", new double[10]);
+        assertTrue(script.execute(bindings, null));
+        assertInstanceOf(double[].class, bindings.get("X"));
+        assertEquals(10, ((double[]) bindings.get("X")).length);
+    }
+}
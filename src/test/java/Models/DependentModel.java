@@ -0,0 +1,24 @@
+package Models;
+
+import Annotations.Bind;
+import Annotations.DependsOn;
+
+//X is computed from A and Y from B, C is read but nothing is computed from it
+public class DependentModel {
+
+    @Bind private int LL;
+    @Bind private double[] A;
+    @Bind private double[] B;
+    @Bind private double[] C;
+    @Bind @DependsOn("A") private double[] X;
+    @Bind @DependsOn("B") private double[] Y;
+
+    public void run() {
+        X = new double[LL];
+        Y = new double[LL];
+        for (int t = 0; t < LL; t++) {
+            X[t] = A[t] * 2;
+            Y[t] = B[t] + 1;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package Models;
+
+import Annotations.Bind;
+import Annotations.Chunkable;
+
+//grows KI and KS by their yearly rates, PKB and EKS are computed from them
+@Chunkable(lag = 1)
+public class GrowthModel {
+
+    @Bind private int LL;
+    @Bind private double[] twKI;
+    @Bind private double[] twKS;
+    @Bind private double[] KI;
+    @Bind private double[] KS;
+    @Bind private double[] PKB;
+    @Bind private double[] EKS;
+
+    public void run() {
+        PKB = new double[LL];
+        EKS = new double[LL];
+        for (int t = 0; t < LL; t++) {
+            if (t > 0) {
+                KI[t] = twKI[t] * KI[t - 1];
+                KS[t] = twKS[t] * KS[t - 1];
+            }
+            PKB[t] = KI[t] + KS[t];
+            EKS[t] = KS[t] * 0.5;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package Models;
+
+import Annotations.Bind;
+import Annotations.DependsOn;
+
+//C is computed too, but only B declares what it is computed from
+public class PartiallyDependentModel {
+
+    @Bind private int LL;
+    @Bind private double[] A;
+    @Bind @DependsOn("A") private double[] B;
+    @Bind private double[] C;
+
+    public void run() {
+        B = A.clone();
+        C = A.clone();
+    }
+}
@@ -0,0 +1,16 @@
+package Models;
+
+import Annotations.Bind;
+import Annotations.DependsOn;
+
+//B depends on a variable the model doesn't have
+public class UnknownDependencyModel {
+
+    @Bind private int LL;
+    @Bind private double[] A;
+    @Bind @DependsOn("Q") private double[] B;
+
+    public void run() {
+        B = A.clone();
+    }
+}